@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IAnnotation;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.IJavaSearchScope;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchParticipant;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+
+/**
+ * Finds the units of a project whose top-level types all carry one of a list
+ * of annotations, such as <i>@GwtIncompatible</i>, so they are dropped before
+ * j2objc is launched instead of being parsed only to be stripped. The
+ * candidates are found with one query of the JDT search index and checked
+ * against their types' annotations. The result is kept per project and
+ * updated unit by unit as units change; it is rebuilt only when the
+ * annotations, the classpath or the source folders change.
+ */
+public final class AnnotatedUnits {
+
+    /**
+     * The annotated units of a project.
+     */
+    private static final class Index {
+
+        /** The annotations. */
+        private final List<String> annotations;
+
+        /** The full paths of the annotated units. */
+        private final Set<IPath> units = new HashSet<IPath>();
+
+        /** The full paths of the units changed since the index was last updated. */
+        private final Set<IPath> changed = new HashSet<IPath>();
+
+        /**
+         * Builds the index of the project from the search index.
+         *
+         * @param javaProject
+         *            the java project
+         * @param annotations
+         *            the annotations
+         * @throws CoreException
+         *             the core exception
+         */
+        private Index(IJavaProject javaProject, List<String> annotations) throws CoreException {
+            this.annotations = annotations;
+
+            SearchPattern pattern = null;
+            for (String annotation : annotations) {
+                // the simple name also finds references written with the qualified name
+                SearchPattern annotationPattern = SearchPattern.createPattern(simpleName(annotation), IJavaSearchConstants.ANNOTATION_TYPE,
+                        IJavaSearchConstants.ANNOTATION_TYPE_REFERENCE, SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+                pattern = pattern == null ? annotationPattern : SearchPattern.createOrPattern(pattern, annotationPattern);
+            }
+
+            final Set<ICompilationUnit> candidates = new HashSet<ICompilationUnit>();
+            IJavaSearchScope scope = SearchEngine.createJavaSearchScope(new IJavaElement[] { javaProject }, IJavaSearchScope.SOURCES);
+
+            new SearchEngine().search(pattern, new SearchParticipant[] { SearchEngine.getDefaultSearchParticipant() }, scope,
+                    new SearchRequestor() {
+                        @Override
+                        public void acceptSearchMatch(SearchMatch match) throws CoreException {
+                            if (match.getElement() instanceof IMember) {
+                                ICompilationUnit unit = ((IMember) match.getElement()).getCompilationUnit();
+                                if (unit != null) {
+                                    candidates.add(unit);
+                                }
+                            }
+                        }
+                    }, null);
+
+            for (ICompilationUnit candidate : candidates) {
+                if (isAnnotated(candidate)) {
+                    units.add(candidate.getPath());
+                }
+            }
+        }
+
+        /**
+         * Checks the units changed since the last update again.
+         *
+         * @throws CoreException
+         *             the core exception
+         */
+        private void update() throws CoreException {
+            for (IPath path : changed) {
+                units.remove(path);
+
+                IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
+                IJavaElement element = JavaCore.create(file);
+
+                if (element instanceof ICompilationUnit && element.exists() && isAnnotated((ICompilationUnit) element)) {
+                    units.add(path);
+                }
+            }
+            changed.clear();
+        }
+
+        /**
+         * Checks whether every top-level type of the unit carries one of the
+         * annotations.
+         *
+         * @param unit
+         *            the unit
+         * @return true, if is annotated
+         * @throws CoreException
+         *             the core exception
+         */
+        private boolean isAnnotated(ICompilationUnit unit) throws CoreException {
+            IType[] types = unit.getTypes();
+            if (types.length == 0) {
+                return false;
+            }
+
+            for (IType type : types) {
+                if (!hasAnnotation(type)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the type carries one of the annotations.
+         *
+         * @param type
+         *            the type
+         * @return true, if successful
+         * @throws CoreException
+         *             the core exception
+         */
+        private boolean hasAnnotation(IType type) throws CoreException {
+            for (IAnnotation annotation : type.getAnnotations()) {
+                String written = annotation.getElementName();
+
+                for (String name : annotations) {
+                    if (written.equals(name)) {
+                        return true;
+                    }
+
+                    // a simple name on either side matches by simple name
+                    boolean qualified = written.indexOf('.') != -1 && name.indexOf('.') != -1;
+                    if (!qualified && simpleName(written).equals(simpleName(name))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /** The indexes keyed by project name. */
+    private static final Map<String, Index> INDEXES = new ConcurrentHashMap<String, Index>();
+
+    /** Incremented on every change, so an index built meanwhile is not cached. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /** The JDT changes to a project or source folder that rebuild the index. */
+    private static final int REBUILD_FLAGS = IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+            | IJavaElementDelta.F_CLOSED | IJavaElementDelta.F_OPENED;
+
+    /** The JDT element listener. */
+    private static final IElementChangedListener ELEMENT_LISTENER = new IElementChangedListener() {
+        @Override
+        public void elementChanged(ElementChangedEvent event) {
+            GENERATION.incrementAndGet();
+            visit(event.getDelta());
+        }
+
+        private void visit(IJavaElementDelta delta) {
+            IJavaElement element = delta.getElement();
+
+            switch (element.getElementType()) {
+            case IJavaElement.JAVA_MODEL:
+                break;
+
+            case IJavaElement.JAVA_PROJECT:
+            case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+                if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & REBUILD_FLAGS) != 0) {
+                    INDEXES.remove(element.getJavaProject().getElementName());
+                    return;
+                }
+                break;
+
+            case IJavaElement.PACKAGE_FRAGMENT:
+                break;
+
+            case IJavaElement.COMPILATION_UNIT:
+                Index index = INDEXES.get(element.getJavaProject().getElementName());
+                if (index != null) {
+                    synchronized (index) {
+                        index.changed.add(element.getPath());
+                    }
+                }
+                return;
+
+            default:
+                return;
+            }
+
+            for (IJavaElementDelta child : delta.getAffectedChildren()) {
+                visit(child);
+            }
+        }
+    };
+
+    /**
+     * Gets the full paths of the units of the project whose top-level types
+     * all carry one of the annotations.
+     *
+     * @param javaProject
+     *            the java project
+     * @param annotations
+     *            the simple or qualified names of the annotations
+     * @return the full paths of the units
+     * @throws CoreException
+     *             the core exception
+     */
+    public static Set<IPath> get(IJavaProject javaProject, List<String> annotations) throws CoreException {
+        if (annotations.isEmpty()) {
+            return new HashSet<IPath>();
+        }
+
+        String key = javaProject.getElementName();
+        Index index = INDEXES.get(key);
+
+        if (index == null || !index.annotations.equals(annotations)) {
+            long generation = GENERATION.get();
+            index = new Index(javaProject, new ArrayList<String>(annotations));
+
+            // a unit changed while searching may be missing from the index
+            if (generation == GENERATION.get()) {
+                INDEXES.put(key, index);
+            }
+        }
+
+        synchronized (index) {
+            index.update();
+            return new HashSet<IPath>(index.units);
+        }
+    }
+
+    /**
+     * Starts listening for changes to units.
+     */
+    public static void install() {
+        JavaCore.addElementChangedListener(ELEMENT_LISTENER, ElementChangedEvent.POST_CHANGE);
+    }
+
+    /**
+     * Stops listening for changes to units.
+     */
+    public static void uninstall() {
+        JavaCore.removeElementChangedListener(ELEMENT_LISTENER);
+        INDEXES.clear();
+    }
+
+    /**
+     * Gets the simple name of a type name.
+     *
+     * @param name
+     *            the name
+     * @return the simple name
+     */
+    private static String simpleName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
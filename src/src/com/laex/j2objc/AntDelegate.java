@@ -35,10 +35,11 @@ import com.laex.j2objc.util.MessageUtil;
  */
 public class AntDelegate {
 
+    /** The name of the file the cleanup script is copied to in the project. */
+    public static final String CLEANUP_FILE = ".exportANT.xml";
+
     /** The java project. */
     private IJavaProject javaProject;
-    private String sourceDir;
-    private String destinationDir;
 
     /**
      * The Class EclipeConsoleBuildLogger.
@@ -86,15 +87,6 @@ public class AntDelegate {
             try {
                 Target target = event.getTarget();
 
-                if (isExportTarget(target)) {
-                    msgConsoleStream.write("Exporting ObjectiveC Files");
-                    msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
-                    msgConsoleStream.write("Source Directory: " + sourceDir);
-                    msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
-                    msgConsoleStream.write("Destination Directory: " + destinationDir);
-                    msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
-                }
-
                 if (isTargetCleanup(target)) {
                     msgConsoleStream.write("Cleans up internally generated files (<<project_name>>-classpath and <<project_name>>-prefix).");
                     msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
@@ -113,10 +105,6 @@ public class AntDelegate {
             return target.getName().equals("CLEANUP");
         }
 
-        private boolean isExportTarget(Target target) {
-            return target.getName().equals("Export-ObjectiveC-Files");
-        }
-
         /*
          * (non-Javadoc)
          * 
@@ -131,11 +119,6 @@ public class AntDelegate {
 
                 Target target = event.getTarget();
 
-                if (isExportTarget(target)) {
-                    msgConsoleStream.write("Export finished.");
-                    msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
-                }
-
                 if (isTargetCleanup(target)) {
                     msgConsoleStream.write("Cleanup finished");
                     msgConsoleStream.write(MessageUtil.NEW_LINE_CONSTANT);
@@ -153,65 +136,15 @@ public class AntDelegate {
      * 
      * @param javaProject
      *            the java project
-     * @param sourceDir
-     *            the source dir
-     * @param destinationDir
-     *            the destination dir
      */
     public AntDelegate(IJavaProject javaProject) {
         this.javaProject = javaProject;
     }
 
-    /**
-     * Execute export.
-     * 
-     * @param display
-     *            the display
-     * @throws IOException
-     *             Signals that an I/O exception has occurred.
-     * @throws CoreException
-     *             the core exception
-     */
-    public void executeExport(Display display, String sourceDir, String destinationDir) throws IOException, CoreException {
-        // Resolve file from the plugin
-        this.sourceDir = sourceDir;
-        this.destinationDir = destinationDir;
-
-        URL url = new URL("platform:/plugin/j2objc-eclipse-plugin/exportANT.xml");
-        InputStream is = url.openConnection().getInputStream();
-        IFile tmpFile = javaProject.getProject().getFile(".exportANT.xml");
-        if (!tmpFile.exists()) {
-            tmpFile.create(is, false, null);
-        }
-
-        String tmpAntFile = tmpFile.getLocation().makeAbsolute().toOSString();
-
-        Project exportObjCFilesProject = new Project();
-
-        exportObjCFilesProject.setUserProperty("ant.file", tmpAntFile);
-        exportObjCFilesProject.init();
-
-        ProjectHelper helper = ProjectHelper.getProjectHelper();
-        exportObjCFilesProject.addReference("ant.projectHelper", helper);
-
-        exportObjCFilesProject.setProperty("EXPORT_DIRECTORY", destinationDir);
-        exportObjCFilesProject.setProperty("SOURCE_DIRECTORY", sourceDir);
-
-        MessageConsole console = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE);
-
-        exportObjCFilesProject.addBuildListener(new EclipeConsoleBuildLogger(display, console));
-
-        helper.parse(exportObjCFilesProject, tmpFile.getLocation().toFile());
-
-        exportObjCFilesProject.executeTarget(exportObjCFilesProject.getDefaultTarget());
-
-        tmpFile.delete(true, null);
-    }
-
     public void executeCleanup(Display display) throws IOException, CoreException {
         URL url = new URL("platform:/plugin/j2objc-eclipse-plugin/exportANT.xml");
         InputStream is = url.openConnection().getInputStream();
-        IFile tmpFile = javaProject.getProject().getFile(".exportANT.xml");
+        IFile tmpFile = javaProject.getProject().getFile(CLEANUP_FILE);
         if (!tmpFile.exists()) {
             tmpFile.create(is, false, null);
         }
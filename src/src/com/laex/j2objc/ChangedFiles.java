@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * The files a translation created, replaced or deleted behind the back of
+ * the workspace, so that only they are refreshed rather than the whole
+ * project. A file is refreshed alone, or its folder one level deep when many
+ * of the folder's files changed; a folder new to the workspace is refreshed
+ * once from the topmost new folder.
+ */
+public final class ChangedFiles {
+
+    /** The number of changed files of a folder above which the folder is refreshed instead. */
+    private static final int FOLDER_THRESHOLD = 16;
+
+    /** The changed files. */
+    private final Set<File> files = new LinkedHashSet<File>();
+
+    /**
+     * Records a changed file.
+     *
+     * @param file
+     *            the file
+     */
+    public synchronized void add(File file) {
+        files.add(file.getAbsoluteFile());
+    }
+
+    /**
+     * Records changed files.
+     *
+     * @param changed
+     *            the files
+     */
+    public synchronized void addAll(Collection<File> changed) {
+        for (File file : changed) {
+            add(file);
+        }
+    }
+
+    /**
+     * Checks whether no file changed.
+     *
+     * @return true, if is empty
+     */
+    public synchronized boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    /**
+     * Refreshes the changed files that are in the workspace. The caller must
+     * hold the refresh rules of the folders the files are in.
+     *
+     * @param monitor
+     *            the monitor
+     * @throws CoreException
+     *             the core exception
+     */
+    public void refresh(IProgressMonitor monitor) throws CoreException {
+        List<File> changed;
+        synchronized (this) {
+            changed = new ArrayList<File>(files);
+        }
+
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        Map<IContainer, List<IFile>> folders = new LinkedHashMap<IContainer, List<IFile>>();
+        Set<IContainer> newFolders = new LinkedHashSet<IContainer>();
+
+        for (File file : changed) {
+            for (IFile resource : root.findFilesForLocationURI(file.toURI())) {
+                IContainer folder = resource.getParent();
+
+                if (!folder.exists()) {
+                    newFolders.add(topmostNewFolder(folder));
+                    continue;
+                }
+
+                List<IFile> folderFiles = folders.get(folder);
+                if (folderFiles == null) {
+                    folderFiles = new ArrayList<IFile>();
+                    folders.put(folder, folderFiles);
+                }
+                folderFiles.add(resource);
+            }
+        }
+
+        for (Map.Entry<IContainer, List<IFile>> entry : folders.entrySet()) {
+            if (entry.getValue().size() > FOLDER_THRESHOLD) {
+                entry.getKey().refreshLocal(IResource.DEPTH_ONE, monitor);
+                continue;
+            }
+
+            for (IFile file : entry.getValue()) {
+                file.refreshLocal(IResource.DEPTH_ZERO, monitor);
+            }
+        }
+
+        for (IContainer folder : newFolders) {
+            // a new folder below another new one is refreshed with it
+            if (!folder.exists()) {
+                folder.refreshLocal(IResource.DEPTH_INFINITE, monitor);
+            }
+        }
+    }
+
+    /**
+     * Finds the topmost folder missing from the workspace above and including
+     * the folder.
+     *
+     * @param folder
+     *            the folder, which does not exist in the workspace
+     * @return the topmost new folder, whose parent exists
+     */
+    private static IContainer topmostNewFolder(IContainer folder) {
+        IContainer top = folder;
+        while (top.getParent() != null && !top.getParent().exists()) {
+            top = top.getParent();
+        }
+        return top;
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.laex.j2objc.util.HashUtil;
+
+/**
+ * Records the units of a translation run as they finish, so that a cancelled
+ * or crashed run can be resumed. The journal is append only and every record
+ * carries its own checksum; a record torn by a crash in the middle of a write
+ * is ignored, along with anything after it, when the journal is read back.
+ */
+public class CheckpointJournal {
+
+    /** The name of the folder holding a folder of journals for each project in the state location. */
+    private static final String CHECKPOINTS_FOLDER = "checkpoints";
+
+    /** The header prefix, followed by the key of the translation inputs. */
+    private static final String HEADER = "#inputs ";
+
+    /** The encoding of the journal. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The path of the selected resource. */
+    private IPath selection;
+
+    /** The journal file. */
+    private File file;
+
+    /** The key of the translation inputs. */
+    private String inputsKey;
+
+    /** The stamps of completed units keyed by their path. */
+    private Map<String, String> completed = new HashMap<String, String>();
+
+    /** The length in bytes of the valid records read back. */
+    private long validLength;
+
+    /** The stream records are appended to. */
+    private FileOutputStream out;
+
+    /**
+     * Instantiates a new checkpoint journal for the selected resource,
+     * reading back any records of a previous run with the same inputs.
+     *
+     * @param selection
+     *            the selected resource
+     * @param profile
+     *            the profile the translation runs with; its settings, its
+     *            compiler and the classpath of the project are the inputs
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public CheckpointJournal(IResource selection, TranslationProfile profile) throws IOException, CoreException {
+        this.selection = selection.getFullPath();
+        String name = HashUtil.md5(this.selection.toPortableString()) + ".journal";
+        this.file = getJournalsFolder(selection.getProject()).append(name).toFile();
+        this.inputsKey = HashUtil.md5(profile.getKey() + "\n" + ClasspathResolver.getFingerprint(profile.getProject()));
+        load();
+    }
+
+    /**
+     * Gets the number of units completed by the previous run.
+     *
+     * @return the completed count
+     */
+    public synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Checks whether the unit is in the selected resource.
+     *
+     * @param resource
+     *            the resource
+     * @return true, if the selected resource is or contains the unit
+     */
+    public boolean covers(IResource resource) {
+        return selection.isPrefixOf(resource.getFullPath());
+    }
+
+    /**
+     * Checks if the unit was completed with the same content.
+     *
+     * @param resource
+     *            the resource
+     * @return true, if is completed
+     */
+    public synchronized boolean isCompleted(IResource resource) {
+        String stamp = completed.get(resource.getFullPath().toPortableString());
+        return stamp != null && stamp.equals(stamp(resource));
+    }
+
+    /**
+     * Records a finished unit.
+     *
+     * @param resource
+     *            the resource
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public synchronized void record(IResource resource) throws IOException {
+        String path = resource.getFullPath().toPortableString();
+        String stamp = stamp(resource);
+
+        if (out == null) {
+            open();
+        }
+
+        // one write per record, so a crash can only tear the last record
+        out.write(toRecord(stamp + "\t" + path).getBytes(ENCODING));
+        out.flush();
+        completed.put(path, stamp);
+    }
+
+    /**
+     * Discards the journal, either because the run finished or because the
+     * user chose not to resume it.
+     */
+    public synchronized void reset() {
+        close();
+        completed.clear();
+        FileUtils.deleteQuietly(file);
+    }
+
+    /**
+     * Closes the journal, keeping it for the next run.
+     */
+    public synchronized void close() {
+        IOUtils.closeQuietly(out);
+        out = null;
+    }
+
+    /**
+     * Discards the journals of every selection of the project, so no run of
+     * the project is resumed.
+     *
+     * @param project
+     *            the project
+     */
+    public static void clear(IProject project) {
+        FileUtils.deleteQuietly(getJournalsFolder(project).toFile());
+    }
+
+    /**
+     * Gets the folder holding the journals of the project.
+     *
+     * @param project
+     *            the project
+     * @return the folder
+     */
+    private static IPath getJournalsFolder(IProject project) {
+        return Activator.getDefault().getStateLocation().append(CHECKPOINTS_FOLDER).append(project.getName());
+    }
+
+    /**
+     * Opens the journal for appending, starting a new one if it does not match
+     * the current inputs.
+     *
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void open() throws IOException {
+        boolean fresh = completed.isEmpty();
+        file.getParentFile().mkdirs();
+
+        // drop a torn record so that new records start on a line of their own
+        if (!fresh) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(validLength);
+            } finally {
+                raf.close();
+            }
+        }
+
+        out = new FileOutputStream(file, !fresh);
+        if (fresh) {
+            out.write(toRecord(HEADER + inputsKey).getBytes(ENCODING));
+        }
+    }
+
+    /**
+     * Reads back the valid records of the journal.
+     *
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void load() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+
+        String content = FileUtils.readFileToString(file, ENCODING);
+        int start = 0;
+        boolean header = true;
+
+        // a record is only complete when its line terminator has been written
+        for (int end = content.indexOf('\n'); end != -1; end = content.indexOf('\n', start)) {
+            String record = content.substring(start, end);
+            String data = fromRecord(record);
+            start = end + 1;
+
+            if (data == null) {
+                break;
+            }
+
+            validLength += record.getBytes(ENCODING).length + 1;
+
+            if (header) {
+                if (!data.equals(HEADER + inputsKey)) {
+                    completed.clear();
+                    return;
+                }
+                header = false;
+                continue;
+            }
+
+            int tab = data.indexOf('\t');
+            if (tab != -1) {
+                completed.put(data.substring(tab + 1), data.substring(0, tab));
+            }
+        }
+    }
+
+    /**
+     * Appends the checksum and line terminator to the data.
+     *
+     * @param data
+     *            the data
+     * @return the record
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static String toRecord(String data) throws IOException {
+        return data + "\t" + checksum(data) + "\n";
+    }
+
+    /**
+     * Verifies the checksum of the record.
+     *
+     * @param record
+     *            the record, without the line terminator
+     * @return the data, or null if the record is corrupt
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static String fromRecord(String record) throws IOException {
+        int tab = record.lastIndexOf('\t');
+        if (tab == -1) {
+            return null;
+        }
+
+        String data = record.substring(0, tab);
+        return record.substring(tab + 1).equals(checksum(data)) ? data : null;
+    }
+
+    /**
+     * Checksum.
+     *
+     * @param data
+     *            the data
+     * @return the string
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static String checksum(String data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data.getBytes(ENCODING));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * The stamp identifying the content of the unit.
+     *
+     * @param resource
+     *            the resource
+     * @return the string
+     */
+    private static String stamp(IResource resource) {
+        return resource.getModificationStamp() + ":" + resource.getLocalTimeStamp();
+    }
+}
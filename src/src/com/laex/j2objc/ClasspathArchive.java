@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IProject;
+
+import com.laex.j2objc.util.HashUtil;
+
+/**
+ * Merges the J2ObjC classpath entries of a project into a single cached
+ * archive, on behalf of {@link ClasspathResolver}. Entries are merged in the
+ * order {@link ClasspathResolver} sorts them by path, the order they are
+ * passed in when not merged, and the first occurrence of a file wins, just as
+ * it would when the entries are searched one by one. The archive is rebuilt
+ * only when the fingerprint of the entries changes.
+ */
+public class ClasspathArchive {
+
+    /** The name of the folder holding the archives in the state location. */
+    private static final String CLASSPATH_FOLDER = "classpath";
+
+    /**
+     * Rebuilds the merged archive if the fingerprint of the entries has
+     * changed. A translation and a preview may ask at once, so one archive is
+     * written at a time.
+     *
+     * @param project
+     *            the project
+     * @param entries
+     *            the entries
+     * @param fingerprint
+     *            the fingerprint of the entries
+     * @return the archive
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    static synchronized File update(IProject project, List<String> entries, String fingerprint) throws IOException {
+        File folder = Activator.getDefault().getStateLocation().append(CLASSPATH_FOLDER).toFile();
+        File archive = new File(folder, project.getName() + ".jar");
+        File fingerprintFile = new File(folder, project.getName() + ".fingerprint");
+
+        if (archive.isFile() && fingerprintFile.isFile() && fingerprint.equals(FileUtils.readFileToString(fingerprintFile))) {
+            return archive;
+        }
+
+        folder.mkdirs();
+        File tmpArchive = new File(folder, project.getName() + ".jar.tmp");
+        merge(entries, tmpArchive);
+
+        // replace the archive only when it is complete
+        if (archive.exists() && !archive.delete()) {
+            throw new IOException("Unable to replace " + archive);
+        }
+        if (!tmpArchive.renameTo(archive)) {
+            throw new IOException("Unable to create " + archive);
+        }
+
+        FileUtils.writeStringToFile(fingerprintFile, fingerprint);
+        return archive;
+    }
+
+    /**
+     * Merges the entries into the archive, skipping duplicate files and
+     * signature files that no longer match the merged content.
+     *
+     * @param entries
+     *            the entries
+     * @param archive
+     *            the archive
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void merge(List<String> entries, File archive) throws IOException {
+        Set<String> names = new HashSet<String>();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+
+        try {
+            for (String entry : entries) {
+                File file = new File(entry);
+
+                if (file.isDirectory()) {
+                    List<File> children = new ArrayList<File>();
+                    listFiles(file, children);
+
+                    int prefixLength = file.getAbsolutePath().length() + 1;
+                    for (File child : children) {
+                        String name = child.getAbsolutePath().substring(prefixLength).replace(File.separatorChar, '/');
+                        if (names.add(name)) {
+                            InputStream is = new FileInputStream(child);
+                            try {
+                                write(zos, name, is);
+                            } finally {
+                                IOUtils.closeQuietly(is);
+                            }
+                        }
+                    }
+                } else if (file.isFile()) {
+                    ZipFile zip = new ZipFile(file);
+                    try {
+                        Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+                        while (zipEntries.hasMoreElements()) {
+                            ZipEntry zipEntry = zipEntries.nextElement();
+                            String name = zipEntry.getName();
+
+                            if (zipEntry.isDirectory() || isSignature(name) || !names.add(name)) {
+                                continue;
+                            }
+
+                            InputStream is = zip.getInputStream(zipEntry);
+                            try {
+                                write(zos, name, is);
+                            } finally {
+                                IOUtils.closeQuietly(is);
+                            }
+                        }
+                    } finally {
+                        zip.close();
+                    }
+                }
+            }
+        } finally {
+            zos.close();
+        }
+    }
+
+    /**
+     * Write.
+     *
+     * @param zos
+     *            the zos
+     * @param name
+     *            the name
+     * @param is
+     *            the is
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void write(ZipOutputStream zos, String name, InputStream is) throws IOException {
+        zos.putNextEntry(new ZipEntry(name));
+        IOUtils.copy(is, zos);
+        zos.closeEntry();
+    }
+
+    /**
+     * Checks if the name is a jar signature file.
+     *
+     * @param name
+     *            the name
+     * @return true, if is signature
+     */
+    private static boolean isSignature(String name) {
+        String upper = name.toUpperCase();
+        return upper.startsWith("META-INF/") && (upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA"));
+    }
+
+    /**
+     * Computes the fingerprint of the entries from the path, size and
+     * modification time of every archive and every file within a folder.
+     *
+     * @param entries
+     *            the entries
+     * @return the fingerprint
+     */
+    static String fingerprint(List<String> entries) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String entry : entries) {
+            File file = new File(entry);
+            sb.append(entry).append('\n');
+
+            if (file.isDirectory()) {
+                List<File> children = new ArrayList<File>();
+                listFiles(file, children);
+                for (File child : children) {
+                    sb.append(child.getAbsolutePath()).append(':').append(child.length()).append(':').append(child.lastModified()).append('\n');
+                }
+            } else {
+                sb.append(file.length()).append(':').append(file.lastModified()).append('\n');
+            }
+        }
+
+        return HashUtil.md5(sb.toString());
+    }
+
+    /**
+     * Lists the files of the folder recursively, in a stable order.
+     *
+     * @param folder
+     *            the folder
+     * @param files
+     *            the files
+     */
+    private static void listFiles(File folder, List<File> files) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                listFiles(child, files);
+            } else {
+                files.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Resolves the J2ObjC classpath of a project once and caches the result: the
+ * selected entries and the value of the <i>-classpath</i> switch. A
+ * resolution is discarded when the project's classpath file or its JDT
+ * classpath changes, when a library on the JDT classpath changes, and when
+ * the project is closed, deleted or renamed.
+ * <p>
+ * The fingerprint of the entries' content is not cached, as entries may be
+ * folders, such as the source or output folders of other projects, whose
+ * files change without any of the above; it is computed again for every
+ * translation, which also brings the merged archive up to date.
+ */
+public final class ClasspathResolver {
+
+    /**
+     * A resolved classpath.
+     */
+    private static final class Resolution {
+
+        /** The entries in a stable order. */
+        private final List<String> entries;
+
+        /** The value of the classpath switch. */
+        private final String classpath;
+
+        /** Whether the entries are merged into an archive. */
+        private final boolean compact;
+
+        /**
+         * Resolves the classpath of the project.
+         *
+         * @param project
+         *            the project
+         * @throws IOException
+         *             Signals that an I/O exception has occurred.
+         * @throws CoreException
+         *             the core exception
+         */
+        private Resolution(IProject project) throws IOException, CoreException {
+            Properties classpathProps = PropertiesUtil.getClasspathEntries(project);
+            String[] sorted = classpathProps.keySet().toArray(new String[classpathProps.size()]);
+            Arrays.sort(sorted);
+
+            this.entries = Collections.unmodifiableList(Arrays.asList(sorted));
+            this.compact = !entries.isEmpty() && PropertiesUtil.isCompactClasspath(project);
+
+            if (entries.isEmpty()) {
+                this.classpath = "";
+            } else if (compact) {
+                this.classpath = ClasspathArchive.update(project, entries, ClasspathArchive.fingerprint(entries)).getAbsolutePath();
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (String entry : entries) {
+                    sb.append(entry).append(":");
+                }
+                this.classpath = sb.toString();
+            }
+        }
+    }
+
+    /** The resolutions keyed by project name. */
+    private static final Map<String, Resolution> RESOLUTIONS = new ConcurrentHashMap<String, Resolution>();
+
+    /** Incremented on every invalidation, so a classpath resolved meanwhile is not cached. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /** The JDT changes that affect the J2ObjC classpath. */
+    private static final int CLASSPATH_FLAGS = IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+            | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED;
+
+    /** The resource listener. */
+    private static final IResourceChangeListener RESOURCE_LISTENER = new IResourceChangeListener() {
+        @Override
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getDelta() == null) {
+                return;
+            }
+
+            for (IResourceDelta projectDelta : event.getDelta().getAffectedChildren()) {
+                IProject project = (IProject) projectDelta.getResource();
+
+                boolean projectChanged = projectDelta.getKind() != IResourceDelta.CHANGED
+                        || (projectDelta.getFlags() & IResourceDelta.OPEN) != 0;
+
+                if (projectChanged || projectDelta.findMember(new Path(PropertiesUtil.getClasspathFilename(project))) != null) {
+                    invalidate(project);
+                }
+            }
+        }
+    };
+
+    /** The JDT element listener. */
+    private static final IElementChangedListener ELEMENT_LISTENER = new IElementChangedListener() {
+        @Override
+        public void elementChanged(ElementChangedEvent event) {
+            visit(event.getDelta());
+        }
+
+        private void visit(IJavaElementDelta delta) {
+            IJavaElement element = delta.getElement();
+
+            if (element.getElementType() == IJavaElement.JAVA_PROJECT || element.getElementType() == IJavaElement.PACKAGE_FRAGMENT_ROOT) {
+                if ((delta.getFlags() & CLASSPATH_FLAGS) != 0) {
+                    invalidate(element.getJavaProject().getProject());
+                    return;
+                }
+            }
+
+            // package fragment roots are the deepest elements that matter
+            if (element.getElementType() == IJavaElement.JAVA_MODEL || element.getElementType() == IJavaElement.JAVA_PROJECT) {
+                for (IJavaElementDelta child : delta.getAffectedChildren()) {
+                    visit(child);
+                }
+            }
+        }
+    };
+
+    /**
+     * Gets the classpath entries of the project in a stable order.
+     *
+     * @param project
+     *            the project
+     * @return the entries
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<String> getEntries(IProject project) throws IOException, CoreException {
+        return resolve(project).entries;
+    }
+
+    /**
+     * Gets the value of the <i>-classpath</i> switch for the project, which is
+     * either the merged archive or the list of the selected entries.
+     *
+     * @param project
+     *            the project
+     * @return the classpath, empty if the project has no entries
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public static String getClasspath(IProject project) throws IOException, CoreException {
+        return resolve(project).classpath;
+    }
+
+    /**
+     * Gets the fingerprint of the current content of the project's classpath
+     * entries, rebuilding the merged archive if the content changed since it
+     * was built. Call once per translation, before j2objc runs.
+     *
+     * @param project
+     *            the project
+     * @return the fingerprint
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public static String getFingerprint(IProject project) throws IOException, CoreException {
+        Resolution resolution = resolve(project);
+        String fingerprint = ClasspathArchive.fingerprint(resolution.entries);
+
+        if (resolution.compact) {
+            ClasspathArchive.update(project, resolution.entries, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Discards the resolved classpath of the project, along with its
+     * translation profile.
+     *
+     * @param project
+     *            the project
+     */
+    public static void invalidate(IResource project) {
+        synchronized (RESOLUTIONS) {
+            GENERATION.incrementAndGet();
+            RESOLUTIONS.remove(project.getName());
+        }
+        TranslationProfiles.invalidate(project);
+    }
+
+    /**
+     * Starts listening for changes that invalidate resolved classpaths.
+     */
+    public static void install() {
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(RESOURCE_LISTENER, IResourceChangeEvent.POST_CHANGE);
+        JavaCore.addElementChangedListener(ELEMENT_LISTENER, ElementChangedEvent.POST_CHANGE);
+    }
+
+    /**
+     * Stops listening for changes.
+     */
+    public static void uninstall() {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(RESOURCE_LISTENER);
+        JavaCore.removeElementChangedListener(ELEMENT_LISTENER);
+
+        synchronized (RESOLUTIONS) {
+            GENERATION.incrementAndGet();
+            RESOLUTIONS.clear();
+        }
+    }
+
+    /**
+     * Gets the cached resolution of the project, resolving it if needed.
+     *
+     * @param project
+     *            the project
+     * @return the resolution
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    private static Resolution resolve(IProject project) throws IOException, CoreException {
+        Resolution resolution = RESOLUTIONS.get(project.getName());
+        if (resolution != null) {
+            return resolution;
+        }
+
+        long generation = GENERATION.get();
+        resolution = new Resolution(project);
+
+        synchronized (RESOLUTIONS) {
+            if (generation == GENERATION.get()) {
+                RESOLUTIONS.put(project.getName(), resolution);
+            }
+        }
+        return resolution;
+    }
+}
@@ -3,19 +3,28 @@ package com.laex.j2objc;
 import java.io.IOException;
 
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.ui.IObjectActionDelegate;
 import org.eclipse.ui.IWorkbenchPart;
 
 import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.PropertiesUtil;
 
 public class CleanupAction implements IObjectActionDelegate {
 
@@ -42,19 +51,42 @@ public class CleanupAction implements IObjectActionDelegate {
             if (o instanceof IJavaElement) {
                 IJavaElement jel = (IJavaElement) o;
 
-                IJavaProject javaProject = jel.getJavaProject();
-                AntDelegate antDel = new AntDelegate(javaProject);
+                final IJavaProject javaProject = jel.getJavaProject();
+                final AntDelegate antDel = new AntDelegate(javaProject);
+                final Display display = targetPart.getSite().getShell().getDisplay();
+                final IResource classpathFile = javaProject.getProject().getFile(PropertiesUtil.getClasspathFilename(javaProject.getProject()));
+                final IResource prefixesFile = javaProject.getProject().getFile(PropertiesUtil.constructPrefixPropertiesFilePath(javaProject.getProject()));
+
+                // the cleanup file, the cleanup and the refresh make one resource delta
+                IWorkspaceRunnable cleanup = new IWorkspaceRunnable() {
+                    @Override
+                    public void run(IProgressMonitor monitor) throws CoreException {
+                        try {
+                            // forget what was translated, so the next run translates everything
+                            TranslationState.clear(javaProject.getProject());
+                            CheckpointJournal.clear(javaProject.getProject());
+
+                            antDel.executeCleanup(display);
+                        } catch (IOException e) {
+                            LogUtil.logException(e);
+                        } catch (CoreException e) {
+                            LogUtil.logException(e);
+                        }
+
+                        // the cleanup deletes only these files
+                        classpathFile.refreshLocal(IResource.DEPTH_ZERO, monitor);
+                        prefixesFile.refreshLocal(IResource.DEPTH_ZERO, monitor);
+                    }
+                };
+
+                IWorkspace workspace = ResourcesPlugin.getWorkspace();
+                IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+                IResource cleanupFile = javaProject.getProject().getFile(AntDelegate.CLEANUP_FILE);
+                ISchedulingRule rule = MultiRule.combine(new ISchedulingRule[] { ruleFactory.createRule(cleanupFile),
+                        ruleFactory.deleteRule(cleanupFile), ruleFactory.refreshRule(classpathFile), ruleFactory.refreshRule(prefixesFile) });
 
                 try {
-                    antDel.executeCleanup(targetPart.getSite().getShell().getDisplay());
-                } catch (IOException e) {
-                    LogUtil.logException(e);
-                } catch (CoreException e) {
-                    LogUtil.logException(e);
-                }
-
-                try {
-                    javaProject.getResource().refreshLocal(IResource.DEPTH_INFINITE, new NullProgressMonitor());
+                    workspace.run(cleanup, rule, IWorkspace.AVOID_UPDATE, new NullProgressMonitor());
                 } catch (CoreException e) {
                     LogUtil.logException(e);
                 }
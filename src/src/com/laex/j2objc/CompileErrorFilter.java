@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaModelMarker;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+import com.laex.j2objc.util.MessageUtil;
+
+/**
+ * Finds the compilation units that JDT reports compile errors for. j2objc
+ * fails on every one of them, so they are skipped instead of launching the
+ * translator, and translated by a later run once they compile.
+ */
+public class CompileErrorFilter {
+
+    /** The broken units, with their first error message, ordered by path. */
+    private Map<IResource, String> brokenUnits = new TreeMap<IResource, String>(new Comparator<IResource>() {
+        @Override
+        public int compare(IResource r1, IResource r2) {
+            return r1.getFullPath().toPortableString().compareTo(r2.getFullPath().toPortableString());
+        }
+    });
+
+    /**
+     * Collects the units below the selection that have compile errors. The
+     * problem markers of the whole selection are read with one call.
+     *
+     * @param selection
+     *            the selection
+     * @throws CoreException
+     *             the core exception
+     */
+    public CompileErrorFilter(IResource selection) throws CoreException {
+        IMarker[] markers = selection.findMarkers(IJavaModelMarker.JAVA_MODEL_PROBLEM_MARKER, true, IResource.DEPTH_INFINITE);
+
+        for (IMarker marker : markers) {
+            IResource resource = marker.getResource();
+
+            if (resource.getType() != IResource.FILE || !JavaCore.isJavaLikeFileName(resource.getName())) {
+                continue;
+            }
+
+            if (marker.getAttribute(IMarker.SEVERITY, IMarker.SEVERITY_INFO) != IMarker.SEVERITY_ERROR) {
+                continue;
+            }
+
+            if (!brokenUnits.containsKey(resource)) {
+                brokenUnits.put(resource, marker.getAttribute(IMarker.MESSAGE, ""));
+            }
+        }
+    }
+
+    /**
+     * Adds the units with compile errors another filter found, for a
+     * translation merged from several selections.
+     *
+     * @param other
+     *            the other filter
+     */
+    void addAll(CompileErrorFilter other) {
+        for (Entry<IResource, String> entry : other.brokenUnits.entrySet()) {
+            if (!brokenUnits.containsKey(entry.getKey())) {
+                brokenUnits.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the unit has compile errors.
+     *
+     * @param unit
+     *            the unit
+     * @return true, if is broken
+     */
+    public boolean isBroken(IResource unit) {
+        return brokenUnits.containsKey(unit);
+    }
+
+    /**
+     * Checks whether any unit has compile errors.
+     *
+     * @return true, if there are broken units
+     */
+    public boolean hasBrokenUnits() {
+        return !brokenUnits.isEmpty();
+    }
+
+    /**
+     * Gets the number of units with compile errors.
+     *
+     * @return the count
+     */
+    public int getBrokenCount() {
+        return brokenUnits.size();
+    }
+
+    /**
+     * Writes the units with compile errors to the console, all together.
+     *
+     * @param console
+     *            the console
+     * @param display
+     *            the display
+     * @param skipped
+     *            whether the units are skipped, rather than the whole
+     *            translation blocked
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public void report(MessageConsole console, Display display, boolean skipped) throws IOException {
+        if (brokenUnits.isEmpty()) {
+            return;
+        }
+
+        MessageConsoleStream mct = console.newMessageStream();
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_RED);
+
+        if (skipped) {
+            mct.write(String.format("Skipping %d file(s) with compile errors:%s", brokenUnits.size(), MessageUtil.NEW_LINE_CONSTANT));
+        } else {
+            mct.write(String.format("Translation blocked by %d file(s) with compile errors:%s", brokenUnits.size(), MessageUtil.NEW_LINE_CONSTANT));
+        }
+
+        for (Entry<IResource, String> entry : brokenUnits.entrySet()) {
+            mct.write(String.format("  %s: %s%s", entry.getKey().getFullPath(), entry.getValue(), MessageUtil.NEW_LINE_CONSTANT));
+        }
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.HashUtil;
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.ProcessUtil;
+
+/**
+ * What the j2objc executable at a path supports: its version, the flags listed
+ * by its help and whether it accepts several source files, argument files and
+ * <i>-sourcepath</i>. The compiler is probed once per path and modification
+ * time, and the result is kept in the plugin state so later sessions do not
+ * probe again. When the probe fails nothing is assumed beyond what every
+ * version supports: one source file per invocation with the configured
+ * switches.
+ */
+public final class CompilerCapabilities {
+
+    /** The name of the folder holding the probe results in the state location. */
+    private static final String COMPILERS_FOLDER = "compilers";
+
+    /** The flag printing the version. */
+    private static final String VERSION_FLAG = "-version";
+
+    /** The pattern of a version number. */
+    private static final Pattern VERSION_PATTERN = Pattern.compile("(\\d+(\\.\\d+)+)");
+
+    /** The pattern of a flag anywhere in the help, such as both forms in "-d, --destination". */
+    private static final Pattern FLAG_PATTERN = Pattern.compile("(?<![\\w-])(-{1,2}[A-Za-z][\\w-]*)");
+
+    /** The pattern of a usage accepting several source files. */
+    private static final Pattern MULTIPLE_INPUTS_PATTERN = Pattern.compile("(?i)(source files|files\\.\\.\\.|\\.java \\.\\.\\.)");
+
+    /** The probed capabilities keyed by executable path and modification time. */
+    private static final Map<String, CompilerCapabilities> CAPABILITIES = new ConcurrentHashMap<String, CompilerCapabilities>();
+
+    /** The executable. */
+    private final File executable;
+
+    /** The modification time of the executable when it was probed. */
+    private final long lastModified;
+
+    /** Whether the probe succeeded. */
+    private final boolean probed;
+
+    /** The version, or "unknown". */
+    private final String version;
+
+    /** The flags listed by the help. */
+    private final Set<String> flags;
+
+    /** Whether several source files can be translated by one invocation. */
+    private final boolean multipleInputs;
+
+    /** Whether arguments can be read from an <i>@argfile</i>. */
+    private final boolean argfiles;
+
+    /** Whether <i>-sourcepath</i> is supported. */
+    private final boolean sourcepath;
+
+    /**
+     * Instantiates new compiler capabilities from a probe result.
+     *
+     * @param executable
+     *            the executable
+     * @param lastModified
+     *            the modification time of the executable
+     * @param result
+     *            the probe result
+     */
+    private CompilerCapabilities(File executable, long lastModified, Properties result) {
+        this.executable = executable;
+        this.lastModified = lastModified;
+        this.probed = Boolean.parseBoolean(result.getProperty("probed"));
+        this.version = result.getProperty("version", "unknown");
+        this.multipleInputs = Boolean.parseBoolean(result.getProperty("multipleInputs"));
+        this.argfiles = Boolean.parseBoolean(result.getProperty("argfiles"));
+        this.sourcepath = Boolean.parseBoolean(result.getProperty("sourcepath"));
+
+        Set<String> flagSet = new HashSet<String>();
+        String flagList = result.getProperty("flags", "");
+        if (StringUtils.isNotEmpty(flagList)) {
+            flagSet.addAll(Arrays.asList(flagList.split(" ")));
+        }
+        this.flags = Collections.unmodifiableSet(flagSet);
+    }
+
+    /**
+     * Gets the capabilities of the j2objc executable in the folder, probing it
+     * if it has not been probed since it was last modified.
+     *
+     * @param pathToCompiler
+     *            the folder of the executable
+     * @return the capabilities
+     */
+    public static CompilerCapabilities get(String pathToCompiler) {
+        File executable = new File(pathToCompiler, PreferenceConstants.J2_OBJC_COMPILER);
+        long lastModified = executable.lastModified();
+        String key = executable.getAbsolutePath() + ":" + lastModified;
+
+        CompilerCapabilities capabilities = CAPABILITIES.get(key);
+        if (capabilities != null) {
+            return capabilities;
+        }
+
+        synchronized (CAPABILITIES) {
+            capabilities = CAPABILITIES.get(key);
+            if (capabilities != null) {
+                return capabilities;
+            }
+
+            File resultFile = Activator.getDefault().getStateLocation().append(COMPILERS_FOLDER).append(HashUtil.md5(key) + ".properties")
+                    .toFile();
+
+            Properties result = load(resultFile);
+            if (result == null) {
+                result = probe(executable);
+
+                // a failed probe is retried in the next session
+                if (Boolean.parseBoolean(result.getProperty("probed"))) {
+                    store(resultFile, result);
+                }
+            }
+
+            capabilities = new CompilerCapabilities(executable, lastModified, result);
+            CAPABILITIES.put(key, capabilities);
+            return capabilities;
+        }
+    }
+
+    /**
+     * Runs the executable to find out what it supports.
+     *
+     * @param executable
+     *            the executable
+     * @return the probe result
+     */
+    private static Properties probe(File executable) {
+        Properties result = new Properties();
+        result.setProperty("probed", Boolean.FALSE.toString());
+
+        if (!executable.isFile()) {
+            return result;
+        }
+
+        try {
+            String versionOutput = ProcessUtil.capture(executable.getAbsolutePath(), VERSION_FLAG);
+            String help = ProcessUtil.capture(executable.getAbsolutePath(), PreferenceConstants.HELP);
+
+            Matcher versionMatcher = VERSION_PATTERN.matcher(versionOutput);
+            if (versionMatcher.find()) {
+                result.setProperty("version", versionMatcher.group(1));
+            }
+
+            Set<String> flagSet = new HashSet<String>();
+            Matcher flagMatcher = FLAG_PATTERN.matcher(help);
+            while (flagMatcher.find()) {
+                flagSet.add(flagMatcher.group(1));
+            }
+            result.setProperty("flags", StringUtils.join(flagSet, " "));
+
+            result.setProperty("multipleInputs", Boolean.toString(MULTIPLE_INPUTS_PATTERN.matcher(help).find()));
+            result.setProperty("sourcepath", Boolean.toString(flagSet.contains("-sourcepath")));
+            result.setProperty("argfiles", Boolean.toString(probeArgfiles(executable, versionOutput)));
+
+            // without a usable help the result says nothing about the flags
+            result.setProperty("probed", Boolean.toString(!flagSet.isEmpty()));
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the executable reads arguments from an argument file, by
+     * passing the version flag through one and comparing the output.
+     *
+     * @param executable
+     *            the executable
+     * @param versionOutput
+     *            the output of the version flag passed directly
+     * @return true, if argument files are supported
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static boolean probeArgfiles(File executable, String versionOutput) throws IOException {
+        if (StringUtils.isBlank(versionOutput)) {
+            return false;
+        }
+
+        File argfile = File.createTempFile("j2objc-probe", ".args");
+        try {
+            FileUtils.writeStringToFile(argfile, VERSION_FLAG);
+            String output = ProcessUtil.capture(executable.getAbsolutePath(), "@" + argfile.getAbsolutePath());
+            return versionOutput.trim().equals(output.trim());
+        } finally {
+            argfile.delete();
+        }
+    }
+
+    /**
+     * Loads a stored probe result.
+     *
+     * @param file
+     *            the file
+     * @return the result, or null if there is none
+     */
+    private static Properties load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties result = new Properties();
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            result.load(is);
+            return result;
+        } catch (IOException e) {
+            LogUtil.logException(e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Stores a probe result.
+     *
+     * @param file
+     *            the file
+     * @param result
+     *            the result
+     */
+    private static void store(File file, Properties result) {
+        file.getParentFile().mkdirs();
+
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(file);
+            result.store(os, "");
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
+    /**
+     * Checks whether the executable changed since it was probed.
+     *
+     * @return true, if the capabilities may be out of date
+     */
+    public boolean isStale() {
+        return executable.lastModified() != lastModified;
+    }
+
+    /**
+     * Checks whether the probe succeeded.
+     *
+     * @return true, if the capabilities are known
+     */
+    public boolean isProbed() {
+        return probed;
+    }
+
+    /**
+     * Checks whether the flag is supported. Flags of a compiler that could not
+     * be probed are assumed to be supported, as they were before the probe
+     * existed.
+     *
+     * @param flag
+     *            the flag, with or without its value
+     * @return true, if is supported
+     */
+    public boolean isSupported(String flag) {
+        if (!probed) {
+            return true;
+        }
+
+        // "-x objective-c" and "-Xbootclasspath:..." are listed by their first token
+        String name = flag.split("[ :]")[0];
+        return flags.contains(name);
+    }
+
+    /**
+     * Gets the version.
+     *
+     * @return the version, or "unknown"
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks whether several source files can be translated by one
+     * invocation.
+     *
+     * @return true, if batching is supported
+     */
+    public boolean supportsMultipleInputs() {
+        return probed && multipleInputs;
+    }
+
+    /**
+     * Checks whether arguments can be read from an argument file.
+     *
+     * @return true, if argument files are supported
+     */
+    public boolean supportsArgfiles() {
+        return probed && argfiles;
+    }
+
+    /**
+     * Checks whether <i>-sourcepath</i> is supported.
+     *
+     * @return true, if is supported
+     */
+    public boolean supportsSourcepath() {
+        return !probed || sourcepath;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        if (!probed) {
+            return "j2objc (version unknown, not probed)";
+        }
+        return String.format("j2objc %s (batching: %s, argfiles: %s)", version, multipleInputs, argfiles);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.laex.j2objc.util.LogUtil;
+
+/**
+ * The classes a ProGuard usage file, the <i>--dead-code-report</i> of j2objc,
+ * lists as entirely unused. A unit all of whose classes are dead is not
+ * translated at all, rather than translated into empty shells. A report is
+ * parsed once per modification time of the file.
+ * <p>
+ * In the usage file a class name alone on a line is an unused class, and a
+ * class name followed by a colon introduces the unused members of a class
+ * that is itself used.
+ */
+public final class DeadCodeReport {
+
+    /** The report listing no dead classes. */
+    private static final DeadCodeReport NONE = new DeadCodeReport(0, 0, Collections.<String> emptySet());
+
+    /** The parsed reports keyed by path. */
+    private static final Map<String, DeadCodeReport> REPORTS = new ConcurrentHashMap<String, DeadCodeReport>();
+
+    /** The modification time of the file the report was parsed from. */
+    private final long lastModified;
+
+    /** The length of the file the report was parsed from. */
+    private final long length;
+
+    /** The binary names of the dead classes. */
+    private final Set<String> deadClasses;
+
+    /**
+     * Instantiates a new dead code report.
+     *
+     * @param lastModified
+     *            the modification time of the file
+     * @param length
+     *            the length of the file
+     * @param deadClasses
+     *            the binary names of the dead classes
+     */
+    private DeadCodeReport(long lastModified, long length, Set<String> deadClasses) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.deadClasses = deadClasses;
+    }
+
+    /**
+     * Gets the report parsed from the usage file, parsing it again only if it
+     * changed since it was last parsed.
+     *
+     * @param path
+     *            the path of the usage file, or null or empty if there is
+     *            none
+     * @return the report, listing no dead classes if the file does not exist
+     */
+    public static DeadCodeReport get(String path) {
+        if (StringUtils.isBlank(path)) {
+            return NONE;
+        }
+
+        File file = new File(path.trim());
+        if (!file.isFile()) {
+            return NONE;
+        }
+
+        DeadCodeReport report = REPORTS.get(file.getAbsolutePath());
+        if (report != null && report.lastModified == file.lastModified() && report.length == file.length()) {
+            return report;
+        }
+
+        try {
+            report = parse(file);
+        } catch (IOException e) {
+            LogUtil.logException(e);
+            return NONE;
+        }
+
+        REPORTS.put(file.getAbsolutePath(), report);
+        return report;
+    }
+
+    /**
+     * Parses the usage file.
+     *
+     * @param file
+     *            the file
+     * @return the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static DeadCodeReport parse(File file) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Set<String> deadClasses = new HashSet<String>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // members are indented; a used class with unused members ends with a colon
+                if (line.length() == 0 || Character.isWhitespace(line.charAt(0))) {
+                    continue;
+                }
+
+                String className = line.trim();
+                if (!className.endsWith(":")) {
+                    deadClasses.add(className);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+
+        return new DeadCodeReport(lastModified, length, Collections.unmodifiableSet(deadClasses));
+    }
+
+    /**
+     * Checks whether the report lists no dead classes.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return deadClasses.isEmpty();
+    }
+
+    /**
+     * Checks whether the class is dead.
+     *
+     * @param binaryName
+     *            the binary name of the class, with '$' separating member
+     *            classes
+     * @return true, if is dead
+     */
+    public boolean isDead(String binaryName) {
+        return deadClasses.contains(binaryName);
+    }
+
+    /**
+     * Checks whether every class of the unit is dead. The unit is parsed only
+     * if the class named after it is dead.
+     *
+     * @param unit
+     *            the unit
+     * @return true, if the unit need not be translated
+     * @throws CoreException
+     *             the core exception
+     */
+    public boolean isDeadUnit(IResource unit) throws CoreException {
+        if (deadClasses.isEmpty() || !(unit instanceof IFile)) {
+            return false;
+        }
+
+        IJavaElement element = JavaCore.create((IFile) unit);
+        if (!(element instanceof ICompilationUnit)) {
+            return false;
+        }
+
+        ICompilationUnit compilationUnit = (ICompilationUnit) element;
+        String packageName = compilationUnit.getParent().getElementName();
+        String name = unit.getName();
+        String typeName = name.substring(0, name.lastIndexOf('.'));
+
+        if (!isDead(packageName.length() > 0 ? packageName + "." + typeName : typeName)) {
+            return false;
+        }
+
+        for (IType type : compilationUnit.getAllTypes()) {
+            if (!isDead(type.getFullyQualifiedName('$'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.laex.j2objc.util.LogUtil;
+
+/**
+ * Exports the outputs of the units translated so far while later units are
+ * still being translated. The translation hands the outputs of each
+ * invocation of j2objc to a bounded queue, from which one thread exports
+ * them; when the export falls behind, the translation waits for room in the
+ * queue. The outputs of an invocation are always exported together, and the
+ * queue is drained before the pipeline finishes, also when the build is
+ * cancelled, so the destination never holds part of a translation. When the
+ * export fails unexpectedly, the pipeline stops taking outputs and the
+ * failure is rethrown when it finishes.
+ */
+public final class ExportPipeline {
+
+    /**
+     * The outputs of one invocation of j2objc.
+     */
+    private static final class Outputs {
+
+        /** The folder j2objc wrote to, or null for the end of the queue. */
+        private final File root;
+
+        /** The files j2objc wrote. */
+        private final List<File> files;
+
+        /**
+         * Instantiates new outputs.
+         *
+         * @param root
+         *            the folder j2objc wrote to
+         * @param files
+         *            the files j2objc wrote
+         */
+        private Outputs(File root, List<File> files) {
+            this.root = root;
+            this.files = files;
+        }
+    }
+
+    /** The number of invocations whose outputs wait in the queue at most. */
+    private static final int CAPACITY = 16;
+
+    /** How long a full queue is waited on before the thread is checked again, in milliseconds. */
+    private static final long POLL_INTERVAL = 100;
+
+    /** Marks the end of the queue. */
+    private static final Outputs END = new Outputs(null, null);
+
+    /** The exporter. */
+    private final OutputExporter exporter;
+
+    /** The outputs waiting to be exported. */
+    private final BlockingQueue<Outputs> queue = new ArrayBlockingQueue<Outputs>(CAPACITY);
+
+    /** The outcomes of the outputs exported so far. */
+    private final OutputExporter.Report report = new OutputExporter.Report();
+
+    /** The thread exporting the outputs. */
+    private final Thread thread;
+
+    /** What stopped the thread before the end of the queue, or null. */
+    private volatile Throwable failure;
+
+    /**
+     * Instantiates a new export pipeline and starts exporting.
+     *
+     * @param exporter
+     *            the exporter
+     */
+    public ExportPipeline(OutputExporter exporter) {
+        this.exporter = exporter;
+
+        thread = new Thread("J2OBJC Export Pipeline") {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the outputs of an invocation of j2objc, waiting while the queue
+     * is full. Outputs not queued because the wait is interrupted stay where
+     * j2objc wrote them and are exported with the rest after the walk;
+     * outputs not queued because the export failed stay there too.
+     *
+     * @param root
+     *            the folder j2objc wrote to
+     * @param files
+     *            the files j2objc wrote
+     */
+    public void submit(File root, List<File> files) {
+        try {
+            enqueue(new Outputs(root, new ArrayList<File>(files)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the outputs queued so far are exported.
+     *
+     * @return the outcomes of the outputs exported by the pipeline
+     * @throws InterruptedException
+     *             the interrupted exception
+     * @throws IOException
+     *             if the export failed and stopped the pipeline
+     */
+    public OutputExporter.Report finish() throws InterruptedException, IOException {
+        enqueue(END);
+        thread.join();
+
+        if (failure != null) {
+            throw new IOException("The export of the outputs failed", failure);
+        }
+        return report;
+    }
+
+    /**
+     * Queues the outputs, waiting while the queue is full and the thread
+     * still takes them.
+     *
+     * @param outputs
+     *            the outputs
+     * @return true, if the outputs were queued
+     * @throws InterruptedException
+     *             the interrupted exception
+     */
+    private boolean enqueue(Outputs outputs) throws InterruptedException {
+        while (thread.isAlive()) {
+            if (queue.offer(outputs, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exports the queued outputs until the end of the queue.
+     */
+    private void drain() {
+        while (true) {
+            Outputs outputs;
+            try {
+                outputs = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (outputs == END) {
+                return;
+            }
+
+            try {
+                report.add(exporter.export(outputs.root, outputs.files));
+            } catch (IOException e) {
+                // the outputs stay where j2objc wrote them
+                LogUtil.logException(e);
+            } catch (Throwable t) {
+                // this and later outputs stay where j2objc wrote them
+                failure = t;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.HashUtil;
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.MessageUtil;
+import com.laex.j2objc.util.ProcessUtil;
+
+/**
+ * Translates the sources of the libraries on the project's J2ObjC classpath
+ * into reusable output bundles. A bundle is keyed by the hash of the library's
+ * source archive and the switches it was translated with, and is stored in the
+ * plugin's state location so that every project depending on the same library
+ * shares it. A bundle is built in a folder of its own and renamed into place
+ * once complete, so translations of projects sharing a library never see, or
+ * delete, a bundle another one is building.
+ */
+public class LibraryTranslationDelegate {
+
+    /** The name of the folder holding the bundles in the state location. */
+    private static final String LIBRARIES_FOLDER = "libraries";
+
+    /** The number of units translated by one invocation, when the compiler supports it. */
+    private static final int BATCH_SIZE = 32;
+
+    /** The marker written once a bundle is complete. */
+    private static final String BUNDLE_MARKER = "bundle.properties";
+
+    /** Source archive hashes keyed by path, size and modification time. */
+    private static final Map<String, String> ARCHIVE_HASHES = new ConcurrentHashMap<String, String>();
+
+    /** The translation profile. */
+    private TranslationProfile profile;
+
+    /** The monitor. */
+    private IProgressMonitor monitor;
+
+    /** The display. */
+    private Display display;
+
+    /**
+     * Instantiates a new library translation delegate.
+     *
+     * @param display
+     *            the display
+     * @param profile
+     *            the translation profile of the project
+     * @param monitor
+     *            the monitor
+     */
+    public LibraryTranslationDelegate(Display display, TranslationProfile profile, IProgressMonitor monitor) {
+        this.display = display;
+        this.profile = profile;
+        this.monitor = monitor;
+    }
+
+    /**
+     * Translates every library on the project's J2ObjC classpath that has
+     * sources available, reusing previously translated bundles.
+     *
+     * @param javaProject
+     *            the java project
+     * @return the output folders of the bundles the project depends on
+     * @throws CoreException
+     *             the core exception
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public List<File> translateLibraries(IJavaProject javaProject) throws CoreException, IOException {
+        IProject project = javaProject.getProject();
+        List<File> bundles = new ArrayList<File>();
+
+        String switches = profile.getSwitches();
+
+        for (String entry : ClasspathResolver.getEntries(project)) {
+            if (monitor.isCanceled()) {
+                break;
+            }
+
+            File library = new File(entry);
+            if (!library.isFile() || !isArchive(library.getName())) {
+                continue;
+            }
+
+            File sourceArchive = findSourceArchive(javaProject, library);
+            if (sourceArchive == null) {
+                continue;
+            }
+
+            String bundleKey = HashUtil.md5(archiveHash(sourceArchive) + switches);
+            File bundle = getStateLocation().append(LIBRARIES_FOLDER)
+                    .append(FilenameUtils.getBaseName(library.getName()) + "-" + bundleKey).toFile();
+            File output = new File(bundle, "out");
+
+            if (new File(bundle, BUNDLE_MARKER).isFile()) {
+                writeMessage(String.format("Using translated library %s", library.getName()));
+                bundles.add(output);
+                continue;
+            }
+
+            try {
+                if (translateBundle(library, sourceArchive, bundle, switches)) {
+                    bundles.add(output);
+                }
+            } catch (IOException e) {
+                // one broken library does not keep the others from being translated
+                LogUtil.logException(e);
+                writeMessage(String.format("Library %s could not be translated: %s", library.getName(), e.getMessage()));
+            }
+        }
+
+        return bundles;
+    }
+
+    /**
+     * Copies the outputs of the bundles to the destination directory. Files
+     * already present with the same size and modification time are skipped.
+     *
+     * @param bundles
+     *            the bundle output folders
+     * @param destinationDir
+     *            the destination dir
+     * @param mode
+     *            whether the files are copied, hard linked or cloned
+     * @return the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static OutputExporter.Report exportBundles(List<File> bundles, String destinationDir, OutputExporter.Mode mode) throws IOException {
+        // the bundles stay in the cache
+        return new OutputExporter(new File(destinationDir), false, false, mode).export(bundles);
+    }
+
+    /**
+     * Translates the sources of the library into a new bundle, built in a
+     * folder of its own and renamed to the bundle once complete. When another
+     * translation completed the bundle meanwhile, that bundle is kept.
+     *
+     * @param library
+     *            the library
+     * @param sourceArchive
+     *            the source archive
+     * @param bundle
+     *            the bundle
+     * @param switches
+     *            the switches
+     * @return true, if the bundle was completed
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    private boolean translateBundle(File library, File sourceArchive, File bundle, String switches) throws IOException,
+            CoreException {
+        File building = new File(bundle.getParentFile(), bundle.getName() + "." + UUID.randomUUID() + ".tmp");
+
+        try {
+            return buildBundle(library, sourceArchive, building, switches) && moveBundle(building, bundle);
+        } finally {
+            // gone once renamed to the bundle
+            FileUtils.deleteQuietly(building);
+        }
+    }
+
+    /**
+     * Translates the sources of the library into the folder.
+     *
+     * @param library
+     *            the library
+     * @param sourceArchive
+     *            the source archive
+     * @param bundle
+     *            the folder the bundle is built in
+     * @param switches
+     *            the switches
+     * @return true, if the bundle was completed
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    private boolean buildBundle(File library, File sourceArchive, File bundle, String switches) throws IOException, CoreException {
+        File sources = new File(bundle, "src");
+        File output = new File(bundle, "out");
+        output.mkdirs();
+
+        writeMessage(String.format("Translating library %s", library.getName()));
+
+        List<File> units = extractSources(sourceArchive, sources);
+
+        // library units are resolved against each other through -sourcepath, or else against the library on the classpath
+        StringBuilder sb = new StringBuilder(profile.getBaseCommand());
+        if (profile.getCapabilities().supportsSourcepath()) {
+            sb.append("-sourcepath").append(" ").append(sources.getAbsolutePath()).append(" ");
+        }
+        sb.append(PreferenceConstants.OUTPUT_DIR).append(" ").append(output.getAbsolutePath()).append(" ");
+
+        String baseCommand = sb.toString();
+
+        CompilerCapabilities capabilities = profile.getCapabilities();
+        int batchSize = capabilities.supportsMultipleInputs() ? BATCH_SIZE : 1;
+
+        for (int i = 0; i < units.size(); i += batchSize) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+
+            List<File> batch = units.subList(i, Math.min(i + batchSize, units.size()));
+            monitor.subTask(library.getName() + ": " + batch.get(0).getName());
+
+            List<String> paths = new ArrayList<String>();
+            for (File unit : batch) {
+                paths.add(unit.getAbsolutePath());
+            }
+
+            int exitValue;
+            if (batch.size() > 1 && capabilities.supportsArgfiles()) {
+                File argfile = new File(bundle, "units.args");
+                FileUtils.writeLines(argfile, paths);
+                exitValue = ProcessUtil.execute(display, baseCommand + "@" + argfile.getAbsolutePath());
+                argfile.delete();
+            } else {
+                exitValue = ProcessUtil.execute(display, baseCommand + StringUtils.join(paths, " "));
+            }
+
+            // a partial bundle is not cached, so the library is translated again next time
+            if (exitValue != 0) {
+                writeMessage(String.format("Library %s could not be translated; it will be translated again next time", library.getName()));
+                return false;
+            }
+        }
+
+        // the sources are not needed once the bundle is complete
+        FileUtils.deleteDirectory(sources);
+
+        Properties marker = new Properties();
+        marker.put("library", library.getAbsolutePath());
+        marker.put("sources", sourceArchive.getAbsolutePath());
+        marker.put("switches", switches);
+
+        OutputStream os = new FileOutputStream(new File(bundle, BUNDLE_MARKER));
+        try {
+            marker.store(os, "");
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+
+        return true;
+    }
+
+    /**
+     * Renames the completed folder to the bundle. A bundle left without its
+     * marker by an earlier version is replaced; a complete bundle another
+     * translation moved into place first is kept, and the folder deleted.
+     *
+     * @param building
+     *            the completed folder
+     * @param bundle
+     *            the bundle
+     * @return true, if the bundle is complete
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static synchronized boolean moveBundle(File building, File bundle) throws IOException {
+        if (!new File(bundle, BUNDLE_MARKER).isFile()) {
+            FileUtils.deleteDirectory(bundle);
+            if (building.renameTo(bundle)) {
+                return true;
+            }
+        }
+
+        FileUtils.deleteDirectory(building);
+        return new File(bundle, BUNDLE_MARKER).isFile();
+    }
+
+    /**
+     * Extracts the java sources of the archive. An entry whose path leads
+     * out of the destination is rejected.
+     *
+     * @param sourceArchive
+     *            the source archive
+     * @param destination
+     *            the destination
+     * @return the extracted sources
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private List<File> extractSources(File sourceArchive, File destination) throws IOException {
+        List<File> units = new ArrayList<File>();
+        String destinationPath = destination.getCanonicalPath() + File.separator;
+        ZipFile zip = new ZipFile(sourceArchive);
+
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".java")) {
+                    continue;
+                }
+
+                File unit = new File(destination, entry.getName());
+                if (!unit.getCanonicalPath().startsWith(destinationPath)) {
+                    throw new IOException(String.format("%s contains an entry outside of its folders: %s", sourceArchive, entry.getName()));
+                }
+
+                InputStream is = zip.getInputStream(entry);
+                OutputStream os = FileUtils.openOutputStream(unit);
+                try {
+                    IOUtils.copy(is, os);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                    IOUtils.closeQuietly(os);
+                }
+
+                units.add(unit);
+            }
+        } finally {
+            zip.close();
+        }
+
+        return units;
+    }
+
+    /**
+     * Finds the sources of a library. The source attachment configured in the
+     * Java build path is preferred, followed by a sibling <i>-sources</i>
+     * archive and finally the library itself if it contains java files.
+     *
+     * @param javaProject
+     *            the java project
+     * @param library
+     *            the library
+     * @return the source archive, or null if the library has no sources
+     * @throws CoreException
+     *             the core exception
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private File findSourceArchive(IJavaProject javaProject, File library) throws CoreException, IOException {
+        for (IClasspathEntry entry : javaProject.getResolvedClasspath(true)) {
+            if (entry.getEntryKind() != IClasspathEntry.CPE_LIBRARY || entry.getSourceAttachmentPath() == null) {
+                continue;
+            }
+
+            File entryFile = toFile(entry.getPath());
+            if (entryFile != null && entryFile.equals(library)) {
+                File attachment = toFile(entry.getSourceAttachmentPath());
+                if (attachment != null && attachment.isFile()) {
+                    return attachment;
+                }
+            }
+        }
+
+        String baseName = FilenameUtils.getBaseName(library.getName());
+        String extension = FilenameUtils.getExtension(library.getName());
+        File sibling = new File(library.getParentFile(), baseName + "-sources." + extension);
+        if (sibling.isFile()) {
+            return sibling;
+        }
+
+        return containsSources(library) ? library : null;
+    }
+
+    /**
+     * Resolves a workspace or file system path to a file.
+     *
+     * @param path
+     *            the path
+     * @return the file
+     */
+    private File toFile(IPath path) {
+        IResource res = ResourcesPlugin.getWorkspace().getRoot().findMember(path);
+        if (res != null) {
+            return res.getLocation() == null ? null : res.getLocation().toFile();
+        }
+        return path.toFile();
+    }
+
+    /**
+     * Checks whether the archive contains java files.
+     *
+     * @param archive
+     *            the archive
+     * @return true, if successful
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private boolean containsSources(File archive) throws IOException {
+        ZipFile zip = new ZipFile(archive);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                if (entries.nextElement().getName().endsWith(".java")) {
+                    return true;
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return false;
+    }
+
+    /**
+     * Hash of the archive's content, remembered for as long as the archive's
+     * size and modification time stay the same.
+     *
+     * @param archive
+     *            the archive
+     * @return the string
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static String archiveHash(File archive) throws IOException {
+        String key = archive.getAbsolutePath() + ":" + archive.length() + ":" + archive.lastModified();
+        String hash = ARCHIVE_HASHES.get(key);
+        if (hash == null) {
+            hash = HashUtil.md5(archive);
+            ARCHIVE_HASHES.put(key, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Checks if the file name denotes an archive.
+     *
+     * @param name
+     *            the name
+     * @return true, if is archive
+     */
+    private static boolean isArchive(String name) {
+        return name.endsWith("jar") || name.endsWith("zip");
+    }
+
+    /**
+     * Gets the state location.
+     *
+     * @return the state location
+     */
+    private static IPath getStateLocation() {
+        return Activator.getDefault().getStateLocation();
+    }
+
+    /**
+     * Write message.
+     *
+     * @param message
+     *            the message
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void writeMessage(String message) throws IOException {
+        MessageConsoleStream mct = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE).newMessageStream();
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+        mct.write(message);
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.Platform;
+
+import com.laex.j2objc.util.ProcessUtil;
+
+/**
+ * Exports generated Objective-C files from the folders j2objc wrote them to
+ * into a destination folder, keeping their paths relative to those folders.
+ * Only outputs missing from the destination or different from the file
+ * there are written; a file is compared by size and modification time and,
+ * optionally, byte by byte when only the modification time differs, so an
+ * unchanged output keeps the timestamp it has in the destination. Files are
+ * exported in parallel and every file gets an
+ * {@link Outcome} in the {@link Report}.
+ * <p>
+ * Files that have to be copied can be hard linked or cloned instead, as set
+ * by the {@link Mode}. Links are made by the <i>ln</i> and <i>cp</i> tools of
+ * the system, one invocation per destination folder; when the first one
+ * fails, because the destination is on another file system or the file
+ * system cannot clone, the remaining files are copied, as are the files of
+ * later exports by the same exporter.
+ */
+public final class OutputExporter {
+
+    /**
+     * What happened to one exported file.
+     */
+    public enum Outcome {
+
+        /** The file was missing from the destination. */
+        ADDED,
+
+        /** The file replaced a different file in the destination. */
+        UPDATED,
+
+        /** The destination already had the same file. */
+        UNCHANGED,
+
+        /** The file could not be exported. */
+        FAILED
+    }
+
+    /**
+     * How files that have to be copied are written to the destination.
+     */
+    public enum Mode {
+
+        /** Copy the contents. */
+        COPY("Copy files"),
+
+        /** Hard link the files, which then share their contents and timestamps. */
+        HARD_LINK("Hard link files"),
+
+        /** Clone the files on file systems with copy-on-write, such as btrfs, XFS and APFS. */
+        CLONE("Clone files (copy-on-write)");
+
+        /** The label. */
+        private final String label;
+
+        /**
+         * Instantiates a new mode.
+         *
+         * @param label
+         *            the label
+         */
+        private Mode(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the label.
+         *
+         * @return the label
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * The outcomes of an export.
+     */
+    public static final class Report {
+
+        /** The outcomes keyed by the file in the destination. */
+        private final Map<File, Outcome> outcomes = new LinkedHashMap<File, Outcome>();
+
+        /** The errors of the files that failed, keyed by the file in the destination. */
+        private final Map<File, String> errors = new LinkedHashMap<File, String>();
+
+        /** The time the export took, in milliseconds. */
+        private long duration;
+
+        /** Why the files were copied instead of linked, or null. */
+        private String note;
+
+        /**
+         * Gets the outcomes keyed by the file in the destination, in the
+         * order the files were found.
+         *
+         * @return the outcomes
+         */
+        public Map<File, Outcome> getOutcomes() {
+            return Collections.unmodifiableMap(outcomes);
+        }
+
+        /**
+         * Gets the error of a file that failed.
+         *
+         * @param target
+         *            the file in the destination
+         * @return the error, or null if the file did not fail
+         */
+        public String getError(File target) {
+            return errors.get(target);
+        }
+
+        /**
+         * Counts the files with the outcome.
+         *
+         * @param outcome
+         *            the outcome
+         * @return the count
+         */
+        public int count(Outcome outcome) {
+            int count = 0;
+            for (Outcome o : outcomes.values()) {
+                if (o == outcome) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Gets the files in the destination the export added or replaced.
+         *
+         * @return the files
+         */
+        public List<File> getChangedFiles() {
+            List<File> changed = new ArrayList<File>();
+            for (Map.Entry<File, Outcome> entry : outcomes.entrySet()) {
+                if (entry.getValue() == Outcome.ADDED || entry.getValue() == Outcome.UPDATED) {
+                    changed.add(entry.getKey());
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Adds the outcomes of another export, whose time adds to the time
+         * of this one.
+         *
+         * @param other
+         *            the report of the other export
+         */
+        public void add(Report other) {
+            outcomes.putAll(other.outcomes);
+            errors.putAll(other.errors);
+            duration += other.duration;
+            if (note == null) {
+                note = other.note;
+            }
+        }
+
+        /**
+         * Gets the time the export took.
+         *
+         * @return the duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Gets why the files were copied instead of linked.
+         *
+         * @return the note, or null if the files were exported as set
+         */
+        public String getNote() {
+            return note;
+        }
+    }
+
+    /** The extensions of the generated files. */
+    private static final String[] EXTENSIONS = { "h", "m", "mm" };
+
+    /** The suffix of a file being written, until it replaces the file in the destination. */
+    private static final String TMP_SUFFIX = ".j2objc-tmp";
+
+    /** The number of files linked by one invocation. */
+    private static final int LINK_BATCH_SIZE = 200;
+
+    /** The number of files below which they are exported on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    /** The number of files exported at once. */
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** The destination. */
+    private final File destination;
+
+    /** Whether the exported files are removed from the folders they were found in. */
+    private final boolean move;
+
+    /** Whether files of the same size are compared by contents when their modification times differ. */
+    private final boolean compareContents;
+
+    /** How files that have to be copied are written. */
+    private final Mode mode;
+
+    /** Whether a link failed, after which the exporter only copies. */
+    private volatile boolean linkFailed;
+
+    /**
+     * Instantiates a new output exporter.
+     *
+     * @param destination
+     *            the destination folder
+     * @param move
+     *            whether the exported files are removed from the folders
+     *            they were found in, as j2objc writes them into the source
+     *            folders
+     * @param compareContents
+     *            whether files of the same size are compared by contents
+     *            when their modification times differ
+     * @param mode
+     *            how files that have to be copied are written
+     */
+    public OutputExporter(File destination, boolean move, boolean compareContents, Mode mode) {
+        this.destination = destination;
+        this.move = move;
+        this.compareContents = compareContents;
+        this.mode = mode;
+    }
+
+    /**
+     * Exports the generated files found in the folders. A folder nested in
+     * another one is exported only relative to itself.
+     *
+     * @param roots
+     *            the folders
+     * @return the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public Report export(List<File> roots) throws IOException {
+        long start = System.currentTimeMillis();
+
+        Set<File> rootSet = new HashSet<File>();
+        for (File root : roots) {
+            rootSet.add(root.getAbsoluteFile());
+        }
+
+        List<File> sources = new ArrayList<File>();
+        List<File> targets = new ArrayList<File>();
+        for (File root : rootSet) {
+            collect(root, root, rootSet, sources, targets);
+        }
+        return export(sources, targets, start);
+    }
+
+    /**
+     * Exports some of the generated files of a folder. Files that do not
+     * exist are skipped.
+     *
+     * @param root
+     *            the folder the paths are relative to
+     * @param files
+     *            the generated files
+     * @return the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public Report export(File root, Collection<File> files) throws IOException {
+        long start = System.currentTimeMillis();
+        String rootPath = root.getAbsolutePath();
+
+        List<File> sources = new ArrayList<File>();
+        List<File> targets = new ArrayList<File>();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            if (file.isFile() && path.startsWith(rootPath + File.separator)) {
+                sources.add(file);
+                targets.add(new File(destination, path.substring(rootPath.length() + 1)));
+            }
+        }
+        return export(sources, targets, start);
+    }
+
+    /**
+     * Exports the files, in parallel when there are enough of them.
+     *
+     * @param sources
+     *            the generated files
+     * @param targets
+     *            the files in the destination
+     * @param start
+     *            the time the export started
+     * @return the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private Report export(final List<File> sources, final List<File> targets, long start) throws IOException {
+        Report report = new Report();
+        if (sources.isEmpty()) {
+            report.duration = System.currentTimeMillis() - start;
+            return report;
+        }
+
+        List<Integer> pending = new ArrayList<Integer>();
+        if (sources.size() < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < sources.size(); i++) {
+                File target = targets.get(i);
+                try {
+                    record(report, pending, i, target, exportFile(sources.get(i), target));
+                } catch (IOException e) {
+                    report.outcomes.put(target, Outcome.FAILED);
+                    report.errors.put(target, e.getMessage());
+                }
+            }
+            link(sources, targets, pending, report);
+
+            report.duration = System.currentTimeMillis() - start;
+            return report;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(THREADS, sources.size()));
+        try {
+            List<Future<Outcome>> futures = new ArrayList<Future<Outcome>>();
+            for (int i = 0; i < sources.size(); i++) {
+                final File source = sources.get(i);
+                final File target = targets.get(i);
+
+                futures.add(executor.submit(new Callable<Outcome>() {
+                    @Override
+                    public Outcome call() throws IOException {
+                        return exportFile(source, target);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                File target = targets.get(i);
+                try {
+                    record(report, pending, i, target, futures.get(i).get());
+                } catch (ExecutionException e) {
+                    report.outcomes.put(target, Outcome.FAILED);
+                    report.errors.put(target, String.valueOf(e.getCause().getMessage()));
+                }
+            }
+
+            link(sources, targets, pending, report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting to " + destination);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.duration = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * Records the outcome of a file, or that the file is left to link.
+     *
+     * @param report
+     *            the report
+     * @param pending
+     *            the indexes of the files left to link
+     * @param i
+     *            the index of the file
+     * @param target
+     *            the file in the destination
+     * @param outcome
+     *            the outcome, or null if the file is left to link
+     */
+    private static void record(Report report, List<Integer> pending, int i, File target, Outcome outcome) {
+        if (outcome == null) {
+            pending.add(i);
+        }
+        report.outcomes.put(target, outcome);
+    }
+
+    /**
+     * Collects the generated files of the folder and where they go in the
+     * destination.
+     *
+     * @param root
+     *            the folder the paths are relative to
+     * @param folder
+     *            the folder
+     * @param roots
+     *            all the folders exported, which are skipped when nested
+     * @param sources
+     *            the generated files
+     * @param targets
+     *            the files in the destination
+     */
+    private void collect(File root, File folder, Set<File> roots, List<File> sources, List<File> targets) {
+        File[] children = folder.listFiles();
+        if (children == null) {
+            return;
+        }
+
+        String rootPath = root.getAbsolutePath();
+        for (File child : children) {
+            if (child.isDirectory()) {
+                if (!roots.contains(child.getAbsoluteFile())) {
+                    collect(root, child, roots, sources, targets);
+                }
+            } else if (FilenameUtils.isExtension(child.getName(), EXTENSIONS)) {
+                sources.add(child);
+                targets.add(new File(destination, child.getAbsolutePath().substring(rootPath.length() + 1)));
+            }
+        }
+    }
+
+    /**
+     * Exports one file.
+     *
+     * @param source
+     *            the generated file
+     * @param target
+     *            the file in the destination
+     * @return the outcome
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private Outcome exportFile(File source, File target) throws IOException {
+        boolean exists = target.isFile();
+
+        if (exists && isSame(source, target)) {
+            if (move && !source.delete()) {
+                throw new IOException("Unable to remove " + source);
+            }
+            return Outcome.UNCHANGED;
+        }
+
+        File parent = target.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        // written beside the target, so the target is never seen half written
+        File tmpFile = new File(parent, target.getName() + TMP_SUFFIX);
+        tmpFile.delete();
+
+        if (move && source.renameTo(tmpFile)) {
+            replace(tmpFile, target, exists);
+            return exists ? Outcome.UPDATED : Outcome.ADDED;
+        }
+
+        // linked with the other files of the folder once all are prepared
+        if (mode != Mode.COPY) {
+            return null;
+        }
+
+        return transfer(source, target, exists);
+    }
+
+    /**
+     * Copies one file, removing it when moving.
+     *
+     * @param source
+     *            the generated file
+     * @param target
+     *            the file in the destination
+     * @param exists
+     *            whether the file in the destination existed
+     * @return the outcome
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private Outcome transfer(File source, File target, boolean exists) throws IOException {
+        File tmpFile = new File(target.getParentFile(), target.getName() + TMP_SUFFIX);
+
+        copy(source, tmpFile);
+        tmpFile.setLastModified(source.lastModified());
+
+        if (move && !source.delete()) {
+            tmpFile.delete();
+            throw new IOException("Unable to remove " + source);
+        }
+
+        replace(tmpFile, target, exists);
+        return exists ? Outcome.UPDATED : Outcome.ADDED;
+    }
+
+    /**
+     * Replaces the file in the destination with the file written beside it.
+     *
+     * @param tmpFile
+     *            the file written beside the target
+     * @param target
+     *            the file in the destination
+     * @param exists
+     *            whether the file in the destination existed
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void replace(File tmpFile, File target, boolean exists) throws IOException {
+        if (exists && !target.delete()) {
+            tmpFile.delete();
+            throw new IOException("Unable to replace " + target);
+        }
+        if (!tmpFile.renameTo(target)) {
+            throw new IOException("Unable to create " + target);
+        }
+    }
+
+    /**
+     * Links the files left to link, one invocation per destination folder
+     * and batch. Once an invocation fails, it and the remaining files are
+     * copied.
+     *
+     * @param sources
+     *            the generated files
+     * @param targets
+     *            the files in the destination
+     * @param pending
+     *            the indexes of the files left to link
+     * @param report
+     *            the report
+     */
+    private void link(List<File> sources, List<File> targets, List<Integer> pending, Report report) {
+        Map<File, List<Integer>> folders = new LinkedHashMap<File, List<Integer>>();
+        for (Integer i : pending) {
+            File folder = targets.get(i).getParentFile();
+            List<Integer> files = folders.get(folder);
+            if (files == null) {
+                files = new ArrayList<Integer>();
+                folders.put(folder, files);
+            }
+            files.add(i);
+        }
+
+        boolean supported = !linkFailed;
+        for (Map.Entry<File, List<Integer>> entry : folders.entrySet()) {
+            List<Integer> files = entry.getValue();
+
+            for (int from = 0; from < files.size(); from += LINK_BATCH_SIZE) {
+                List<Integer> batch = files.subList(from, Math.min(from + LINK_BATCH_SIZE, files.size()));
+
+                Map<Integer, Boolean> existed = new LinkedHashMap<Integer, Boolean>();
+                for (Integer i : batch) {
+                    existed.put(i, targets.get(i).isFile());
+                }
+
+                if (supported && runLink(sources, batch, entry.getKey())) {
+                    for (Integer i : batch) {
+                        File target = targets.get(i);
+                        if (move && !sources.get(i).delete()) {
+                            report.outcomes.put(target, Outcome.FAILED);
+                            report.errors.put(target, "Unable to remove " + sources.get(i));
+                        } else {
+                            report.outcomes.put(target, existed.get(i) ? Outcome.UPDATED : Outcome.ADDED);
+                        }
+                    }
+                    continue;
+                }
+
+                if (supported) {
+                    supported = false;
+                    linkFailed = true;
+                    report.note = String.format("%s is not supported from %s to %s; the files were copied", mode.getLabel(),
+                            sources.get(batch.get(0)).getParent(), destination);
+                }
+
+                for (Integer i : batch) {
+                    File target = targets.get(i);
+                    try {
+                        report.outcomes.put(target, transfer(sources.get(i), target, existed.get(i)));
+                    } catch (IOException e) {
+                        report.outcomes.put(target, Outcome.FAILED);
+                        report.errors.put(target, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Links the files into the destination folder with one invocation of the
+     * system's tool. The files keep their names.
+     *
+     * @param sources
+     *            the generated files
+     * @param batch
+     *            the indexes of the files to link
+     * @param folder
+     *            the destination folder
+     * @return true, if all the files were linked
+     */
+    private boolean runLink(List<File> sources, List<Integer> batch, File folder) {
+        List<String> command = new ArrayList<String>();
+        if (mode == Mode.HARD_LINK) {
+            command.add("ln");
+            command.add("-f");
+        } else if (Platform.OS_MACOSX.equals(Platform.getOS())) {
+            command.add("cp");
+            command.add("-c");
+            command.add("-p");
+        } else {
+            command.add("cp");
+            command.add("--reflink=always");
+            command.add("-p");
+        }
+
+        for (Integer i : batch) {
+            command.add(sources.get(i).getAbsolutePath());
+        }
+        command.add(folder.getAbsolutePath());
+
+        try {
+            return ProcessUtil.executeQuietly(command) == 0;
+        } catch (IOException e) {
+            // no such tool on this system
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the file in the destination is the same as the
+     * generated file.
+     *
+     * @param source
+     *            the generated file
+     * @param target
+     *            the file in the destination
+     * @return true, if is same
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private boolean isSame(File source, File target) throws IOException {
+        if (source.length() != target.length()) {
+            return false;
+        }
+        if (source.lastModified() == target.lastModified()) {
+            return true;
+        }
+        return compareContents && FileUtils.contentEquals(source, target);
+    }
+
+    /**
+     * Copies a file through the channels of the files, leaving the transfer
+     * to the operating system where it can.
+     *
+     * @param source
+     *            the source
+     * @param target
+     *            the target
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream is = new FileInputStream(source);
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(target);
+            FileChannel in = is.getChannel();
+            FileChannel out = os.getChannel();
+
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } finally {
+            IOUtils.closeQuietly(os);
+            IOUtils.closeQuietly(is);
+        }
+    }
+}
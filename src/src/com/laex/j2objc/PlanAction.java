@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.console.IConsoleConstants;
+import org.eclipse.ui.console.IConsoleView;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+import com.laex.j2objc.TranslationState.Reason;
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.MessageUtil;
+
+/**
+ * Reports what "To Objective-C" would translate for the selection, and why,
+ * without launching j2objc.
+ */
+public class PlanAction implements IObjectActionDelegate {
+
+    /** The target part. */
+    private IWorkbenchPart targetPart;
+
+    /** The struc selc. */
+    private IStructuredSelection strucSelc;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.eclipse.ui.IActionDelegate#run(org.eclipse.jface.action.IAction)
+     */
+    @Override
+    public void run(IAction action) {
+        if (!action.isEnabled()) {
+            return;
+        }
+
+        final MessageConsole console = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE);
+
+        IWorkbenchPage page = targetPart.getSite().getWorkbenchWindow().getActivePage();
+        try {
+            IConsoleView view = (IConsoleView) page.showView(IConsoleConstants.ID_CONSOLE_VIEW);
+            view.display(console);
+        } catch (PartInitException e) {
+            LogUtil.logException(e);
+        }
+
+        console.clearConsole();
+
+        final Display display = targetPart.getSite().getShell().getDisplay();
+        final IJavaElement elm = (IJavaElement) strucSelc.getFirstElement();
+
+        Job job = new Job("J2OBJC Translation Plan") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                monitor.beginTask("Planning J2OBJC Translation", IProgressMonitor.UNKNOWN);
+
+                try {
+                    IJavaProject javaProject = elm.getJavaProject();
+                    TranslationProfile profile = TranslationProfiles.get(javaProject.getProject());
+                    TranslationState state = new TranslationState(profile, TranslationState.getOutputRoots(javaProject, profile), false);
+
+                    CompileErrorFilter errorFilter = new CompileErrorFilter(elm.getResource());
+                    TranslationPlanner planner = new TranslationPlanner(state, monitor, errorFilter);
+                    profile.accept(elm.getResource(), planner, planner.getDeadUnitVisitor());
+
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+
+                    report(console, display, elm.getResource(), profile, planner);
+
+                } catch (CoreException e) {
+                    LogUtil.logException(e);
+                    return Status.CANCEL_STATUS;
+                } catch (IOException e) {
+                    LogUtil.logException(e);
+                    return Status.CANCEL_STATUS;
+                } finally {
+                    monitor.done();
+                }
+
+                return Status.OK_STATUS;
+            }
+        };
+
+        job.setUser(true);
+        job.schedule();
+    }
+
+    /**
+     * Writes the plan to the console.
+     *
+     * @param console
+     *            the console
+     * @param display
+     *            the display
+     * @param selection
+     *            the selection
+     * @param profile
+     *            the profile
+     * @param planner
+     *            the planner
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void report(MessageConsole console, Display display, IResource selection, TranslationProfile profile, TranslationPlanner planner)
+            throws IOException {
+        MessageConsoleStream mct = console.newMessageStream();
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+
+        Map<Reason, Integer> counts = new EnumMap<Reason, Integer>(Reason.class);
+
+        mct.write(String.format("Translation plan for %s (profile %s)%s", selection.getFullPath(), profile.getName(),
+                MessageUtil.NEW_LINE_CONSTANT));
+        for (Entry<IResource, Reason> entry : planner.getToTranslate().entrySet()) {
+            mct.write(String.format("  translate %s (%s)%s", entry.getKey().getFullPath(), entry.getValue().getDescription(),
+                    MessageUtil.NEW_LINE_CONSTANT));
+
+            Integer count = counts.get(entry.getValue());
+            counts.put(entry.getValue(), count == null ? 1 : count + 1);
+        }
+
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+        mct.write(String.format("%d file(s) to translate, %d file(s) up to date%s", planner.getToTranslate().size(), planner.getUpToDate(),
+                MessageUtil.NEW_LINE_CONSTANT));
+
+        for (Entry<Reason, Integer> entry : counts.entrySet()) {
+            mct.write(String.format("  %s: %d%s", entry.getKey().getDescription(), entry.getValue(), MessageUtil.NEW_LINE_CONSTANT));
+        }
+
+        if (planner.getBroken() > 0) {
+            mct.write(String.format("%d file(s) with compile errors will be skipped%s", planner.getBroken(), MessageUtil.NEW_LINE_CONSTANT));
+        }
+
+        if (planner.getDead() > 0) {
+            mct.write(String.format("%d file(s) the dead code report lists as unused will be skipped%s", planner.getDead(),
+                    MessageUtil.NEW_LINE_CONSTANT));
+        }
+
+        // finding them reads the sources of the whole project, so the plan stays quick
+        mct.write(String.format("Files that use a changed file are not listed; the translation finds and translates them too%s",
+                MessageUtil.NEW_LINE_CONSTANT));
+
+        long estimate = planner.getEstimatedDuration();
+        if (planner.getToTranslate().isEmpty()) {
+            mct.write("Nothing to translate.");
+        } else if (estimate < 0) {
+            mct.write("Estimated time: unknown, no previous runs.");
+        } else {
+            mct.write(String.format("Estimated time: %d second(s)", Math.round(estimate / 1000.0)));
+        }
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.ui.IActionDelegate#selectionChanged(org.eclipse.jface.action
+     * .IAction, org.eclipse.jface.viewers.ISelection)
+     */
+    @Override
+    public void selectionChanged(IAction action, ISelection selection) {
+        this.strucSelc = (IStructuredSelection) selection;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.ui.IObjectActionDelegate#setActivePart(org.eclipse.jface.
+     * action.IAction, org.eclipse.ui.IWorkbenchPart)
+     */
+    @Override
+    public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+        this.targetPart = targetPart;
+    }
+
+}
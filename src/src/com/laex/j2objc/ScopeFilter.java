@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IResource;
+
+/**
+ * Decides which units of a project are translated, from include and exclude
+ * patterns matched against the project relative path of a unit. A unit is
+ * translated when it matches an include pattern, or there are none, and
+ * matches no exclude pattern. Patterns are compiled once, and
+ * {@link SourceRoots#accept} does not walk folders excluded as a whole.
+ * <p>
+ * Two kinds of patterns are accepted:
+ * <ul>
+ * <li>Ant-style globs such as <i>src/test/**</i> or <i>**&#47;*Test.java</i>,
+ * where <i>**</i> matches any number of folders, <i>*</i> and <i>?</i> match
+ * within a name, and a trailing <i>/</i> stands for everything below a folder.</li>
+ * <li>Package patterns such as <i>com.acme.server.*</i>, the units of a package,
+ * or <i>com.acme.server.**</i>, the units of a package and its subpackages.</li>
+ * </ul>
+ */
+public final class ScopeFilter {
+
+    /** The filter translating every unit. */
+    public static final ScopeFilter ALL = new ScopeFilter(Collections.<String> emptyList(), Collections.<String> emptyList());
+
+    /** The pattern of a package pattern. */
+    private static final Pattern PACKAGE_PATTERN = Pattern.compile("[\\w$]+(\\.[\\w$*]+)*(\\.\\*\\*?)?");
+
+    /** The include patterns. */
+    private final List<Pattern> includes = new ArrayList<Pattern>();
+
+    /** The exclude patterns. */
+    private final List<Pattern> excludes = new ArrayList<Pattern>();
+
+    /** The folders excluded with everything below them. */
+    private final List<Pattern> prunedFolders = new ArrayList<Pattern>();
+
+    /**
+     * Compiles the patterns.
+     *
+     * @param includePatterns
+     *            the include patterns
+     * @param excludePatterns
+     *            the exclude patterns
+     */
+    public ScopeFilter(List<String> includePatterns, List<String> excludePatterns) {
+        for (String pattern : includePatterns) {
+            includes.add(Pattern.compile(toRegex(toGlob(pattern))));
+        }
+
+        for (String pattern : excludePatterns) {
+            String glob = toGlob(pattern);
+            excludes.add(Pattern.compile(toRegex(glob)));
+
+            // "folder/**" excludes the folder itself, so it is not walked at all
+            if (glob.endsWith("/**")) {
+                prunedFolders.add(Pattern.compile(toRegex(glob.substring(0, glob.length() - 3))));
+            }
+        }
+    }
+
+    /**
+     * Checks whether the filter translates every unit.
+     *
+     * @return true, if nothing is filtered
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * Checks whether the unit is translated.
+     *
+     * @param unit
+     *            the unit
+     * @return true, if is included
+     */
+    public boolean isIncluded(IResource unit) {
+        return isIncluded(unit.getProjectRelativePath().toPortableString());
+    }
+
+    /**
+     * Checks whether the unit at the project relative path is translated.
+     *
+     * @param path
+     *            the project relative path
+     * @return true, if is included
+     */
+    public boolean isIncluded(String path) {
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(path).matches()) {
+                return false;
+            }
+        }
+
+        if (includes.isEmpty()) {
+            return true;
+        }
+
+        for (Pattern include : includes) {
+            if (include.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether everything below the folder is excluded, so the folder
+     * need not be walked.
+     *
+     * @param folder
+     *            the folder
+     * @return true, if is pruned
+     */
+    public boolean isPruned(IResource folder) {
+        return isPruned(folder.getProjectRelativePath().toPortableString());
+    }
+
+    /**
+     * Checks whether everything below the folder at the project relative path
+     * is excluded.
+     *
+     * @param path
+     *            the project relative path
+     * @return true, if is pruned
+     */
+    public boolean isPruned(String path) {
+        for (Pattern pruned : prunedFolders) {
+            if (pruned.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turns a package pattern into the equivalent glob; globs are returned as
+     * they are.
+     *
+     * @param pattern
+     *            the pattern
+     * @return the glob
+     */
+    static String toGlob(String pattern) {
+        String trimmed = pattern.trim();
+
+        if (trimmed.indexOf('/') == -1 && !trimmed.endsWith(".java") && PACKAGE_PATTERN.matcher(trimmed).matches()) {
+            if (trimmed.endsWith(".**")) {
+                return "**/" + trimmed.substring(0, trimmed.length() - 3).replace('.', '/') + "/**";
+            }
+            if (trimmed.endsWith(".*")) {
+                return "**/" + trimmed.substring(0, trimmed.length() - 2).replace('.', '/') + "/*";
+            }
+            return "**/" + trimmed.replace('.', '/') + "/*";
+        }
+
+        return trimmed.endsWith("/") ? trimmed + "**" : trimmed;
+    }
+
+    /**
+     * Compiles a glob into a regular expression.
+     *
+     * @param glob
+     *            the glob
+     * @return the regular expression
+     */
+    static String toRegex(String glob) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                    // "**/" matches no folder as well as any number of folders
+                    sb.append("(?:.*/)?");
+                    i += 2;
+                } else {
+                    sb.append(".*");
+                    i++;
+                }
+            } else if (c == '*') {
+                sb.append("[^/]*");
+            } else if (c == '?') {
+                sb.append("[^/]");
+            } else if ("\\.[]{}()+-^$|".indexOf(c) != -1) {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+
+/**
+ * The source folders of a project, with the inclusion and exclusion patterns
+ * of their classpath entries. Units are found by walking only these folders,
+ * so output folders, generated sources and team folders are never visited,
+ * and the outputs of a unit are written to the source folder it belongs to.
+ */
+public final class SourceRoots {
+
+    /**
+     * A source folder and the patterns of its classpath entry.
+     */
+    public static final class SourceRoot {
+
+        /** The folder. */
+        private final IContainer folder;
+
+        /** The inclusion patterns, relative to the folder. */
+        private final List<Pattern> inclusions = new ArrayList<Pattern>();
+
+        /** The exclusion patterns, relative to the folder. */
+        private final List<Pattern> exclusions = new ArrayList<Pattern>();
+
+        /** The folders excluded with everything below them, relative to the folder. */
+        private final List<Pattern> prunedFolders = new ArrayList<Pattern>();
+
+        /**
+         * Instantiates a new source root.
+         *
+         * @param folder
+         *            the folder
+         * @param entry
+         *            the classpath entry of the folder
+         */
+        private SourceRoot(IContainer folder, IClasspathEntry entry) {
+            this.folder = folder;
+
+            for (IPath inclusion : entry.getInclusionPatterns()) {
+                inclusions.add(Pattern.compile(ScopeFilter.toRegex(toGlob(inclusion))));
+            }
+
+            for (IPath exclusion : entry.getExclusionPatterns()) {
+                String glob = toGlob(exclusion);
+                exclusions.add(Pattern.compile(ScopeFilter.toRegex(glob)));
+
+                if (glob.endsWith("/**")) {
+                    prunedFolders.add(Pattern.compile(ScopeFilter.toRegex(glob.substring(0, glob.length() - 3))));
+                }
+            }
+        }
+
+        /**
+         * Turns a classpath pattern into a glob. As in JDT, a trailing slash
+         * stands for everything below a folder.
+         *
+         * @param pattern
+         *            the pattern
+         * @return the glob
+         */
+        private static String toGlob(IPath pattern) {
+            String glob = pattern.toPortableString();
+            return glob.endsWith("/") ? glob + "**" : glob;
+        }
+
+        /**
+         * Gets the folder.
+         *
+         * @return the folder
+         */
+        public IContainer getFolder() {
+            return folder;
+        }
+
+        /**
+         * Gets the location of the folder.
+         *
+         * @return the location
+         */
+        public File getLocation() {
+            return folder.getLocation().toFile();
+        }
+
+        /**
+         * Checks whether the folder contains the path.
+         *
+         * @param fullPath
+         *            the full path
+         * @return true, if the path is the folder or below it
+         */
+        public boolean contains(IPath fullPath) {
+            return folder.getFullPath().isPrefixOf(fullPath);
+        }
+
+        /**
+         * Checks whether the classpath entry includes the unit.
+         *
+         * @param fullPath
+         *            the full path of the unit
+         * @return true, if is included
+         */
+        boolean isIncluded(IPath fullPath) {
+            String path = relativePath(fullPath);
+
+            for (Pattern exclusion : exclusions) {
+                if (exclusion.matcher(path).matches()) {
+                    return false;
+                }
+            }
+
+            if (inclusions.isEmpty()) {
+                return true;
+            }
+
+            for (Pattern inclusion : inclusions) {
+                if (inclusion.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Checks whether the classpath entry excludes everything below the
+         * folder.
+         *
+         * @param fullPath
+         *            the full path of the folder
+         * @return true, if is pruned
+         */
+        boolean isPruned(IPath fullPath) {
+            String path = relativePath(fullPath);
+
+            for (Pattern pruned : prunedFolders) {
+                if (pruned.matcher(path).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Gets the path relative to the folder.
+         *
+         * @param fullPath
+         *            the full path
+         * @return the relative path
+         */
+        private String relativePath(IPath fullPath) {
+            return fullPath.removeFirstSegments(folder.getFullPath().segmentCount()).toPortableString();
+        }
+    }
+
+    /** The source roots, deepest first, so the first root containing a path is its own. */
+    private final List<SourceRoot> roots = new ArrayList<SourceRoot>();
+
+    /** The full paths of the output folders. */
+    private final Set<IPath> outputLocations = new HashSet<IPath>();
+
+    /** The full paths of the source folders. */
+    private final Set<IPath> rootPaths = new HashSet<IPath>();
+
+    /**
+     * Resolves the source roots of the project.
+     *
+     * @param project
+     *            the project
+     * @throws CoreException
+     *             the core exception
+     */
+    SourceRoots(IProject project) throws CoreException {
+        IJavaProject javaProject = JavaCore.create(project);
+        if (javaProject == null || !javaProject.exists()) {
+            return;
+        }
+
+        outputLocations.add(javaProject.getOutputLocation());
+
+        for (IPackageFragmentRoot root : javaProject.getPackageFragmentRoots()) {
+            if (root.getKind() != IPackageFragmentRoot.K_SOURCE || !javaProject.equals(root.getJavaProject())) {
+                continue;
+            }
+
+            IResource folder = root.getResource();
+            if (!(folder instanceof IContainer)) {
+                continue;
+            }
+
+            IClasspathEntry entry = root.getRawClasspathEntry();
+            if (entry.getOutputLocation() != null) {
+                outputLocations.add(entry.getOutputLocation());
+            }
+
+            roots.add(new SourceRoot((IContainer) folder, entry));
+            rootPaths.add(folder.getFullPath());
+        }
+
+        // a root nested in another root owns the units below it
+        Collections.sort(roots, new Comparator<SourceRoot>() {
+            @Override
+            public int compare(SourceRoot r1, SourceRoot r2) {
+                return r2.getFolder().getFullPath().segmentCount() - r1.getFolder().getFullPath().segmentCount();
+            }
+        });
+    }
+
+    /**
+     * Gets the source roots.
+     *
+     * @return the roots
+     */
+    public List<SourceRoot> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * Gets the locations of the source roots.
+     *
+     * @return the locations
+     */
+    public List<File> getLocations() {
+        List<File> locations = new ArrayList<File>();
+        for (SourceRoot root : roots) {
+            locations.add(root.getLocation());
+        }
+        return locations;
+    }
+
+    /**
+     * Checks whether the folder is, or contains, a source root or an output
+     * folder of the project, so generated files must not be written to it.
+     *
+     * @param fullPath
+     *            the full path of the folder
+     * @return true, if is reserved
+     */
+    public boolean isReserved(IPath fullPath) {
+        for (IPath path : rootPaths) {
+            if (fullPath.isPrefixOf(path)) {
+                return true;
+            }
+        }
+        for (IPath path : outputLocations) {
+            if (fullPath.isPrefixOf(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the source root the resource belongs to.
+     *
+     * @param resource
+     *            the resource
+     * @return the source root, or null if the resource is not in one
+     */
+    public SourceRoot find(IResource resource) {
+        for (SourceRoot root : roots) {
+            if (root.contains(resource.getFullPath())) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks the units of the selection that are in a source root, included by
+     * the root's classpath entry and by the scope filter, and passes each to
+     * the visitor. Only the source roots are walked, with resource proxies, so
+     * no resource handle is created for anything but the units visited. The
+     * walk ends as soon as the visitor returns false for a unit.
+     *
+     * @param selection
+     *            the selection
+     * @param scopeFilter
+     *            the scope filter
+     * @param unitVisitor
+     *            the visitor of the units
+     * @throws CoreException
+     *             the core exception
+     */
+    public void accept(IResource selection, final ScopeFilter scopeFilter, final IResourceVisitor unitVisitor) throws CoreException {
+        IPath selectionPath = selection.getFullPath();
+
+        for (final SourceRoot root : roots) {
+            IResource start;
+            if (selectionPath.isPrefixOf(root.getFolder().getFullPath())) {
+                start = root.getFolder();
+            } else if (root.contains(selectionPath) && root == find(selection)) {
+                start = selection;
+            } else {
+                continue;
+            }
+
+            final boolean[] stopped = new boolean[1];
+            start.accept(new IResourceProxyVisitor() {
+                @Override
+                public boolean visit(IResourceProxy proxy) throws CoreException {
+                    if (stopped[0]) {
+                        return false;
+                    }
+
+                    switch (proxy.getType()) {
+                    case IResource.FILE:
+                        if (!JavaCore.isJavaLikeFileName(proxy.getName())) {
+                            return false;
+                        }
+
+                        IPath path = proxy.requestFullPath();
+                        if (root.isIncluded(path) && scopeFilter.isIncluded(path.removeFirstSegments(1).toPortableString())) {
+                            stopped[0] = !unitVisitor.visit(proxy.requestResource());
+                        }
+                        return false;
+
+                    case IResource.FOLDER:
+                        if (proxy.isTeamPrivateMember()) {
+                            return false;
+                        }
+
+                        IPath folderPath = proxy.requestFullPath();
+
+                        // nested roots are walked on their own, output folders not at all
+                        if (!folderPath.equals(root.getFolder().getFullPath()) && rootPaths.contains(folderPath)) {
+                            return false;
+                        }
+                        if (outputLocations.contains(folderPath)) {
+                            return false;
+                        }
+                        return !root.isPruned(folderPath) && !scopeFilter.isPruned(folderPath.removeFirstSegments(1).toPortableString());
+
+                    default:
+                        return true;
+                    }
+                }
+            }, IResource.NONE);
+
+            if (stopped[0]) {
+                return;
+            }
+        }
+    }
+}
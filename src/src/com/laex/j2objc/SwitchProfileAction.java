@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.dialogs.IInputValidator;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.dialogs.ElementListSelectionDialog;
+
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Switches the active profile of the selected project, or creates a new
+ * profile from the settings of the active one. The J2ObjC property pages and
+ * the translation use the settings of the active profile.
+ */
+public class SwitchProfileAction implements IObjectActionDelegate {
+
+    /** The element standing for a new profile in the list of profiles. */
+    private static final String NEW_PROFILE = "<New Profile...>";
+
+    /** The target part. */
+    private IWorkbenchPart targetPart;
+
+    /** The struc selc. */
+    private IStructuredSelection strucSelc;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.eclipse.ui.IActionDelegate#run(org.eclipse.jface.action.IAction)
+     */
+    @Override
+    public void run(IAction action) {
+        if (!action.isEnabled()) {
+            return;
+        }
+
+        Shell shell = targetPart.getSite().getShell();
+        final IProject project = ((IJavaElement) strucSelc.getFirstElement()).getJavaProject().getProject();
+
+        try {
+            final String activeProfile = PropertiesUtil.getActiveProfile(project);
+            final List<String> profiles = PropertiesUtil.getProfiles(project);
+
+            List<String> elements = new ArrayList<String>(profiles);
+            elements.add(NEW_PROFILE);
+
+            ElementListSelectionDialog dialog = new ElementListSelectionDialog(shell, new LabelProvider() {
+                @Override
+                public String getText(Object element) {
+                    return activeProfile.equals(element) ? element + " (active)" : String.valueOf(element);
+                }
+            });
+            dialog.setTitle("J2ObjC Profiles");
+            dialog.setMessage(String.format("Select the profile %s is translated with:", project.getName()));
+            dialog.setElements(elements.toArray());
+            dialog.setMultipleSelection(false);
+
+            if (dialog.open() != Window.OK || dialog.getFirstResult() == null) {
+                return;
+            }
+
+            String selected = (String) dialog.getFirstResult();
+            if (!NEW_PROFILE.equals(selected)) {
+                PropertiesUtil.setActiveProfile(project, selected);
+                return;
+            }
+
+            InputDialog input = new InputDialog(shell, "New J2ObjC Profile", String.format(
+                    "Name of the new profile. It starts with the settings of the profile '%s'.", activeProfile), "", new IInputValidator() {
+                @Override
+                public String isValid(String newText) {
+                    if (!PropertiesUtil.isValidProfileName(newText)) {
+                        return "Use letters, digits, '-' and '_' only.";
+                    }
+                    if (profiles.contains(newText)) {
+                        return "A profile with this name already exists.";
+                    }
+                    return null;
+                }
+            });
+
+            if (input.open() == Window.OK) {
+                PropertiesUtil.createProfile(project, input.getValue());
+            }
+
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.ui.IActionDelegate#selectionChanged(org.eclipse.jface.action
+     * .IAction, org.eclipse.jface.viewers.ISelection)
+     */
+    @Override
+    public void selectionChanged(IAction action, ISelection selection) {
+        this.strucSelc = (IStructuredSelection) selection;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.ui.IObjectActionDelegate#setActivePart(org.eclipse.jface.
+     * action.IAction, org.eclipse.ui.IWorkbenchPart)
+     */
+    @Override
+    public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+        this.targetPart = targetPart;
+    }
+
+}
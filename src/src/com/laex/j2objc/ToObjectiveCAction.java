@@ -13,19 +13,11 @@ package com.laex.j2objc;
 import j2objc_eclipse_plugin.Activator;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.Collections;
 
 import org.apache.commons.lang.StringUtils;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaElement;
-import org.eclipse.jdt.core.IJavaProject;
-import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -43,7 +35,6 @@ import org.eclipse.ui.console.MessageConsoleStream;
 import com.laex.j2objc.preferences.PreferenceConstants;
 import com.laex.j2objc.util.LogUtil;
 import com.laex.j2objc.util.MessageUtil;
-import com.laex.j2objc.util.PropertiesUtil;
 
 /**
  * The Class ToObjectiveCAction.
@@ -56,8 +47,6 @@ public class ToObjectiveCAction implements IObjectActionDelegate {
     /** The struc selc. */
     IStructuredSelection strucSelc = null;
 
-    private int totalWork = 0;
-
     /**
      * Instantiates a new to objective c action.
      */
@@ -105,71 +94,41 @@ public class ToObjectiveCAction implements IObjectActionDelegate {
             return;
         }
 
-        /* Before starting the job, calculate total no. of files to compile */
-        calculateWork();
-
-        // Start the job
-        final Job job = new Job("J2OBJC Command Line Executor") {
-            @Override
-            protected IStatus run(IProgressMonitor monitor) {
-
-                try {
-                    monitor.beginTask("J2OBJC Compiliation", totalWork);
-
-                    IJavaElement elm = (IJavaElement) strucSelc.getFirstElement();
-                    IJavaProject javaProject = (IJavaProject) elm.getJavaProject();
-
-                    Map<String, String> props = PropertiesUtil.getProjectProperties(javaProject.getResource());
-                    props.put(PreferenceConstants.PATH_TO_COMPILER, pathToCompiler);
-
-                    // some initial message plumbing
-                    ToObjectiveCDelegate.clearPrebuiltSwitch();
-
-                    ToObjectiveCDelegate delegate = new ToObjectiveCDelegate(display, props, monitor);
-                    elm.getResource().accept(delegate);
-                    monitor.worked(1);
-
-                    // copy files to some external directory
-                    monitor.subTask("Exporting Objective-C Classes");
-                    String destinationDir = PropertiesUtil.getOutputDirectory(javaProject);
+        IJavaElement selected = (IJavaElement) strucSelc.getFirstElement();
 
-                    doOutput(console, display, javaProject, destinationDir);
-                    monitor.worked(1);
-
-                    // refresh
-                    javaProject.getResource().refreshLocal(IResource.DEPTH_INFINITE, monitor);
-                    monitor.worked(1);
-                    monitor.done();
-
-                } catch (CoreException ce) {
-                    LogUtil.logException(ce);
-                    return Status.CANCEL_STATUS;
-                } catch (IOException e) {
-                    LogUtil.logException(e);
-                    return Status.CANCEL_STATUS;
-                }
+        /* Skip the sources JDT reports compile errors for, or refuse to translate at all */
+        final CompileErrorFilter errorFilter;
+        try {
+            errorFilter = new CompileErrorFilter(selected.getResource());
 
-                return Status.OK_STATUS;
-            }
+            boolean block = Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.BLOCK_ON_COMPILE_ERRORS);
+            errorFilter.report(console, display, !block);
 
-            private void doOutput(final MessageConsole console, final Display display, IJavaProject javaProject, String destinationDir)
-                    throws IOException, CoreException {
-                if (StringUtils.isNotEmpty(destinationDir)) {
-                    // Ant specific code
-                    String sourceDir = javaProject.getResource().getLocation().makeAbsolute().toOSString();
-
-                    AntDelegate antDelegate = new AntDelegate(javaProject);
-                    antDelegate.executeExport(display, sourceDir, destinationDir);
-                } else {
-                    MessageConsoleStream mct = console.newMessageStream();
-                    MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
-                    mct.write("No Output directory specified. Files will not be exported.");
-                }
+            if (block && errorFilter.hasBrokenUnits()) {
+                return;
             }
-        };
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+            return;
+        } catch (IOException e) {
+            LogUtil.logException(e);
+            return;
+        }
 
+        // Start the job, or join the translation of the project already scheduled or running
+        TranslationJob job = new TranslationJob("J2OBJC Command Line Executor", selected.getJavaProject(),
+                Collections.singletonList(selected.getResource()), display, true, errorFilter);
         job.setUser(true);
-        job.schedule();
+
+        if (TranslationJob.submit(job) != job) {
+            try {
+                MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+                mct.write(String.format("A translation of %s is already scheduled or running; %s is translated with it.%s",
+                        selected.getJavaProject().getElementName(), selected.getElementName(), MessageUtil.NEW_LINE_CONSTANT));
+            } catch (IOException e) {
+                LogUtil.logException(e);
+            }
+        }
 
     }
 
@@ -197,32 +156,4 @@ public class ToObjectiveCAction implements IObjectActionDelegate {
         this.targetPart = targetPart;
     }
 
-    private void calculateWork() {
-        IJavaElement elm = (IJavaElement) strucSelc.getFirstElement();
-
-        totalWork = 0;
-
-        try {
-            elm.getResource().accept(new IResourceVisitor() {
-                @Override
-                public boolean visit(IResource resource) throws CoreException {
-
-                    if (!(resource.getType() == IResource.FILE)) {
-                        return true;
-                    }
-
-                    if (JavaCore.isJavaLikeFileName(resource.getName())) {
-                        System.err.println(resource.getName());
-                        totalWork++;
-                        return true;
-                    }
-
-                    return true;
-                }
-            });
-        } catch (CoreException e) {
-            LogUtil.logException(e);
-        }
-    }
-
 }
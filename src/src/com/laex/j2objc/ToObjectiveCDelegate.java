@@ -10,39 +10,40 @@
  */
 package com.laex.j2objc;
 
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
 import java.io.IOException;
-import java.util.Map;
-import java.util.Properties;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.console.MessageConsoleStream;
 
-import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.SourceRoots.SourceRoot;
+import com.laex.j2objc.TranslationState.Reason;
 import com.laex.j2objc.util.LogUtil;
 import com.laex.j2objc.util.MessageUtil;
-import com.laex.j2objc.util.PropertiesUtil;
+import com.laex.j2objc.util.ProcessUtil;
 
 /**
  * The Class ToObjectiveCDelegate.
  */
 public class ToObjectiveCDelegate implements IResourceVisitor {
 
-    private static String prebuiltSwitch;
-
-    /** The prefs. */
-    private Map<String, String> prefs;
+    /** The translation profile. */
+    private TranslationProfile profile;
 
     /** The monitor. */
     private IProgressMonitor monitor;
@@ -50,237 +51,371 @@ public class ToObjectiveCDelegate implements IResourceVisitor {
     /** The display. */
     private Display display;
 
+    /** The checkpoint journals of the run. */
+    private List<CheckpointJournal> journals;
+
+    /** The translation state. */
+    private TranslationState state;
+
+    /** The filter of the units with compile errors. */
+    private CompileErrorFilter errorFilter;
+
+    /** The files the translation wrote. */
+    private ChangedFiles changedFiles;
+
+    /** The pipeline exporting the outputs, or null. */
+    private ExportPipeline pipeline;
+
+    /** The outcomes of the staged outputs written to the output folders. */
+    private OutputExporter.Report written = new OutputExporter.Report();
+
+    /** The name of the folder holding the staging folders in the state location. */
+    private static final String STAGING_FOLDER = "staging";
+
+    /** The number of units translated by one invocation, when the compiler supports it. */
+    private static final int BATCH_SIZE = 32;
+
+    /** The units waiting to be translated together. */
+    private List<IFile> batch = new ArrayList<IFile>();
+
+    /** The encoding of the units in the batch. */
+    private String batchEncoding;
+
+    /** The folder the outputs of the units in the batch are written to. */
+    private String batchOutputPath;
+
     /**
      * Instantiates a new to objective c delegate.
      * 
      * @param display
      *            the display
-     * @param prefs
-     *            the prefs
+     * @param profile
+     *            the translation profile of the project
      * @param monitor
      *            the monitor
+     * @param journals
+     *            the checkpoint journals of the run, one for each resumable
+     *            selection it translates
+     * @param state
+     *            the translation state of the project
+     * @param errorFilter
+     *            the filter of the units with compile errors, which are
+     *            skipped
+     * @param changedFiles
+     *            the files the translation wrote, to refresh afterwards
+     * @param pipeline
+     *            the pipeline exporting the outputs of each translated unit,
+     *            or null if the outputs are not exported
      */
-    public ToObjectiveCDelegate(Display display, Map<String, String> prefs, IProgressMonitor monitor) {
+    public ToObjectiveCDelegate(Display display, TranslationProfile profile, IProgressMonitor monitor, List<CheckpointJournal> journals,
+            TranslationState state, CompileErrorFilter errorFilter, ChangedFiles changedFiles, ExportPipeline pipeline) {
         this.display = display;
-        this.prefs = prefs;
+        this.profile = profile;
         this.monitor = monitor;
+        this.journals = journals;
+        this.state = state;
+        this.errorFilter = errorFilter;
+        this.changedFiles = changedFiles;
+        this.pipeline = pipeline;
     }
 
-    /**
-     * Builds the command.
+    /*
+     * (non-Javadoc)
      * 
-     * @param prefs
-     *            the prefs
-     * @param project
-     *            the project
-     * @param sourcePath
-     *            the source path
-     * @param outputPath
-     *            the output path
-     * @return the string
-     * @throws CoreException
-     *             the core exception
-     * @throws IOException
-     *             Signals that an I/O exception has occurred.
+     * @see
+     * org.eclipse.core.resources.IResourceVisitor#visit(org.eclipse.core.resources
+     * .IResource)
      */
-    private String buildCommand(Display display, Map<String, String> prefs, IProject project, IResource resource, String sourcePath, String outputPath)
-            throws CoreException, IOException {
-        StringBuilder sb = new StringBuilder();
-
-        // Create platform indenpendent path and append the path to the compiler
-        IPath pathToCompiler = new Path(prefs.get(PreferenceConstants.PATH_TO_COMPILER)).append(PreferenceConstants.J2_OBJC_COMPILER);
-        sb.append(pathToCompiler.toOSString()).append(" ");
-
-        Properties classpathProps = PropertiesUtil.getClasspathEntries(project);
-        if (!classpathProps.isEmpty()) {
-            sb.append(PreferenceConstants.CLASSPAPTH).append(" ");
-            for (Object key : classpathProps.keySet()) {
-                sb.append(key).append(":");
-            }
-
-            sb.append(" ");
+    @Override
+    public boolean visit(final IResource resource) throws CoreException {
+        // cancel the job
+        if (monitor.isCanceled()) {
+            onCancelled();
+            monitor.done();
+            return false;
         }
 
-        if (StringUtils.isEmpty(prebuiltSwitch)) {
-            prebuildSwitches(display, prefs, project);
+        if (!(resource.getType() == IResource.FILE)) {
+            return true;
         }
 
-        sb.append(prebuiltSwitch);
-
-        if (resource instanceof IFile) {
-            String charset = ((IFile) resource).getCharset();
-            sb.append(PreferenceConstants.ENCODING).append(" ").append(charset).append(" ");
+        if (!JavaCore.isJavaLikeFileName(resource.getName())) {
+            return true;
         }
 
-        sb.append(PreferenceConstants.OUTPUT_DIR).append(" ").append(outputPath).append(" ");
-
-        sb.append(sourcePath);
+        // fails in j2objc anyway; a later run translates it once it compiles
+        if (errorFilter.isBroken(resource)) {
+            monitor.worked(1);
+            return true;
+        }
 
-        return sb.toString();
-    }
+        // already translated by a previous run that did not finish
+        if (isCompleted(resource)) {
+            monitor.worked(1);
+            return true;
+        }
 
-    public static void clearPrebuiltSwitch() {
-        prebuiltSwitch = null;
-    }
+        // nothing changed since the last translation
+        if (state.check(resource) == Reason.UP_TO_DATE) {
+            monitor.worked(1);
+            return true;
+        }
 
-    public static void prebuildSwitches(Display display, Map<String, String> prefs, IProject project) throws IOException {
-        StringBuilder sb = new StringBuilder();
+        IFile unit = (IFile) resource;
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT, prefs))
-            sb.append(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT).append(" ");
+        if (profile.getCapabilities().supportsMultipleInputs()) {
+            // units are translated together, one encoding and source root per invocation
+            String encoding = profile.getEncoding(unit);
+            String outputPath = getOutputPath(unit);
+            if (!batch.isEmpty() && (!encoding.equals(batchEncoding) || !outputPath.equals(batchOutputPath))) {
+                flush();
+            }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_PACKAGE_DIRECTORIES, prefs))
-            sb.append(PreferenceConstants.NO_PACKAGE_DIRECTORIES).append(" ");
+            batch.add(unit);
+            batchEncoding = encoding;
+            batchOutputPath = outputPath;
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C, prefs))
-            sb.append(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C).append(" ");
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+            return true;
+        }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP, prefs))
-            sb.append(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP).append(" ");
+        String sourcePath = resource.getLocation().makeAbsolute().toOSString();
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_REFERENCE_COUNTING, prefs))
-            sb.append(PreferenceConstants.USE_REFERENCE_COUNTING).append(" ");
+        File stagingFolder = null;
+        try {
+            String outputPath = getOutputPath(resource);
+            stagingFolder = createStagingFolder();
+            String cmd = profile.buildCommand(unit, sourcePath, stagingFolder != null ? stagingFolder.getAbsolutePath() : outputPath);
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_ARC, prefs))
-            sb.append(PreferenceConstants.USE_ARC).append(" ");
+            monitor.subTask(resource.getName());
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_GC, prefs))
-            sb.append(PreferenceConstants.USE_GC).append(" ");
+            long start = System.currentTimeMillis();
+            int exitValue = ProcessUtil.execute(display, cmd);
+            List<File> outputs = state.getOutputFiles(resource, new File(outputPath));
+            publish(stagingFolder, outputPath, outputs);
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.ERROR_TO_WARNING, prefs))
-            sb.append(PreferenceConstants.ERROR_TO_WARNING).append(" ");
+            // a unit j2objc failed on is not completed, so resuming tries it again
+            if (exitValue == 0) {
+                record(resource);
+                state.record(resource, System.currentTimeMillis() - start);
+                export(outputPath, outputs);
+            }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.QUIET, prefs))
-            sb.append(PreferenceConstants.QUIET).append(" ");
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        } finally {
+            FileUtils.deleteQuietly(stagingFolder);
+        }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.VERBOSE, prefs))
-            sb.append(PreferenceConstants.VERBOSE).append(" ");
+        monitor.worked(1);
 
-        /* Ignore INLINE FIELD ACCESS. This property is no longer present in 0.8.7 */
-//        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_INLINE_FIELD_ACCESS, prefs))
-//            sb.append(PreferenceConstants.NO_INLINE_FIELD_ACCESS).append(" ");
+        return true;
+    }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_GENERATE_TEST_MAIN, prefs))
-            sb.append(PreferenceConstants.NO_GENERATE_TEST_MAIN).append(" ");
+    /**
+     * Translates the units still waiting in the batch. Call once the visit is
+     * complete.
+     * 
+     * @throws CoreException
+     *             the core exception
+     */
+    public void finish() throws CoreException {
+        if (!monitor.isCanceled()) {
+            flush();
+        }
+    }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.IGNORE_MISSING_IMPORTS, prefs))
-            sb.append(PreferenceConstants.IGNORE_MISSING_IMPORTS).append(" ");
+    /**
+     * Translates the units in the batch with one invocation.
+     * 
+     * @throws CoreException
+     *             the core exception
+     */
+    private void flush() throws CoreException {
+        if (batch.isEmpty()) {
+            return;
+        }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.PRINT_CONVERTED_SOURCES, prefs))
-            sb.append(PreferenceConstants.PRINT_CONVERTED_SOURCES).append(" ");
+        List<String> sourcePaths = new ArrayList<String>();
+        for (IFile unit : batch) {
+            sourcePaths.add(unit.getLocation().makeAbsolute().toOSString());
+        }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.MEM_DEBUG, prefs))
-            sb.append(PreferenceConstants.MEM_DEBUG).append(" ");
+        File argfile = null;
+        File stagingFolder = null;
+        try {
+            if (profile.getCapabilities().supportsArgfiles()) {
+                argfile = File.createTempFile("j2objc", ".args");
+            }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_NATIVE_STUBS, prefs))
-            sb.append(PreferenceConstants.GENERATE_NATIVE_STUBS).append(" ");
+            stagingFolder = createStagingFolder();
+            String cmd = profile.buildBatchCommand(sourcePaths, batchEncoding, stagingFolder != null ? stagingFolder.getAbsolutePath()
+                    : batchOutputPath, argfile);
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.TIMING_INFO, prefs))
-            sb.append(PreferenceConstants.TIMING_INFO).append(" ");
+            monitor.subTask(String.format("%s and %d more", batch.get(0).getName(), batch.size() - 1));
 
-        /* 0.8.7 changes */
-        if (PropertiesUtil.hasProperty(PreferenceConstants.BUILD_CLOSURE, prefs))
-            sb.append(PreferenceConstants.BUILD_CLOSURE).append(" ");
+            long start = System.currentTimeMillis();
+            int exitValue = ProcessUtil.execute(display, cmd);
+            long duration = (System.currentTimeMillis() - start) / batch.size();
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_DEPRECATED, prefs))
-            sb.append(PreferenceConstants.GENERATE_DEPRECATED).append(" ");
+            List<File> outputs = new ArrayList<File>();
+            for (IFile unit : batch) {
+                outputs.addAll(state.getOutputFiles(unit, new File(batchOutputPath)));
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.STRIP_REFLECTION, prefs))
-            sb.append(PreferenceConstants.STRIP_REFLECTION).append(" ");
+                if (exitValue == 0) {
+                    record(unit);
+                    state.record(unit, duration);
+                }
+            }
+            publish(stagingFolder, batchOutputPath, outputs);
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.STRIP_GWT_INCOMPATIBLE, prefs))
-            sb.append(PreferenceConstants.STRIP_GWT_INCOMPATIBLE).append(" ");
+            if (exitValue == 0) {
+                export(batchOutputPath, outputs);
+            }
 
-        if (PropertiesUtil.hasProperty(PreferenceConstants.SEGMENTED_HEADERS, prefs))
-            sb.append(PreferenceConstants.SEGMENTED_HEADERS).append(" ");
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        } finally {
+            if (argfile != null) {
+                argfile.delete();
+            }
+            FileUtils.deleteQuietly(stagingFolder);
+        }
 
-        if (PropertiesUtil.hasTextProperty(PreferenceConstants.DEAD_CODE_REPORT, prefs))
-            sb.append(PreferenceConstants.DEAD_CODE_REPORT).append(" ").append(prefs.get(PreferenceConstants.DEAD_CODE_REPORT)).append(" ");
+        monitor.worked(batch.size());
+        batch.clear();
+    }
 
-        if (PropertiesUtil.hasTextProperty(PreferenceConstants.METHOD_MAPPING_FILE, prefs))
-            sb.append(PreferenceConstants.METHOD_MAPPING_FILE).append(" ").append(prefs.get(PreferenceConstants.METHOD_MAPPING_FILE)).append(" ");
+    /**
+     * Gets the outcomes of the staged outputs written to the output folders.
+     * 
+     * @return the report, empty if the outputs are exported
+     */
+    public OutputExporter.Report getWritten() {
+        return written;
+    }
 
-        if (PropertiesUtil.hasTextProperty(PreferenceConstants.BOOTCLASSPATH, prefs))
-            sb.append(PreferenceConstants.BOOTCLASSPATH).append(":").append(prefs.get(PreferenceConstants.BOOTCLASSPATH)).append(" ");
+    /**
+     * Checks whether the journal of a selection holding the unit has it
+     * completed by a previous run.
+     *
+     * @param resource
+     *            the resource
+     * @return true, if is completed
+     */
+    private boolean isCompleted(IResource resource) {
+        for (CheckpointJournal journal : journals) {
+            if (journal.covers(resource) && journal.isCompleted(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        if (PropertiesUtil.doesExistPrefixPropertiesFile(project))
-            sb.append(PreferenceConstants.PREFIXES).append(" ").append(PropertiesUtil.getPrefixPropertiesFile(project)).append(" ");
+    /**
+     * Records a finished unit in the journals of the selections holding it.
+     *
+     * @param resource
+     *            the resource
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void record(IResource resource) throws IOException {
+        for (CheckpointJournal journal : journals) {
+            if (journal.covers(resource)) {
+                journal.record(resource);
+            }
+        }
+    }
 
-        prebuiltSwitch = sb.toString();
+    /**
+     * Creates a staging folder of its own for an invocation, when the outputs
+     * stay where j2objc writes them. Exported outputs are compared in the
+     * output directory instead.
+     * 
+     * @return the folder, or null if j2objc writes to the output folder
+     *         itself
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private File createStagingFolder() throws IOException {
+        if (pipeline != null) {
+            return null;
+        }
 
-        MessageConsoleStream mct = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE).newMessageStream();
-        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
-        mct.write(String.format("Executing with switches: [ %s ]%s", prebuiltSwitch, MessageUtil.NEW_LINE_CONSTANT));
+        File folder = Activator.getDefault().getStateLocation().append(STAGING_FOLDER).append(Long.toString(System.nanoTime())).toFile();
+        if (!folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        return folder;
     }
 
-    /*
-     * (non-Javadoc)
+    /**
+     * Records the outputs of an invocation as changed. Outputs j2objc wrote to
+     * a staging folder first replace only the outputs in the output folder
+     * that differ from them; an identical output is left untouched, so its
+     * timestamp does not make Xcode compile its dependents again.
      * 
-     * @see
-     * org.eclipse.core.resources.IResourceVisitor#visit(org.eclipse.core.resources
-     * .IResource)
+     * @param stagingFolder
+     *            the staging folder, or null if j2objc wrote to the output
+     *            folder
+     * @param outputPath
+     *            the output folder
+     * @param outputs
+     *            the outputs in the output folder
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
      */
-    @Override
-    public boolean visit(final IResource resource) throws CoreException {
-        // cancel the job
-        if (monitor.isCanceled()) {
-            onCancelled();
-            resource.getProject().refreshLocal(IResource.DEPTH_INFINITE, monitor);
-            monitor.done();
-            return false;
+    private void publish(File stagingFolder, String outputPath, List<File> outputs) throws IOException {
+        if (stagingFolder == null) {
+            changedFiles.addAll(outputs);
+            return;
         }
 
-        if (!(resource.getType() == IResource.FILE)) {
-            return true;
+        OutputExporter publisher = new OutputExporter(new File(outputPath), true, true, OutputExporter.Mode.COPY);
+        OutputExporter.Report report = publisher.export(Collections.singletonList(stagingFolder));
+        written.add(report);
+        changedFiles.addAll(report.getChangedFiles());
+    }
+
+    /**
+     * Hands the outputs of an invocation to the pipeline, which exports them
+     * while the next units are translated.
+     * 
+     * @param outputPath
+     *            the folder j2objc wrote to
+     * @param outputs
+     *            the outputs
+     */
+    private void export(String outputPath, List<File> outputs) {
+        if (pipeline != null) {
+            pipeline.submit(new File(outputPath), outputs);
         }
+    }
 
-        if (!JavaCore.isJavaLikeFileName(resource.getName())) {
-            return true;
+    /**
+     * Gets the folder j2objc writes the outputs of the unit to.
+     * 
+     * @param resource
+     *            the unit
+     * @return the output path
+     */
+    private String getOutputPath(IResource resource) {
+        // a generated folder keeps the outputs out of the Java sources
+        IFolder generatedFolder = profile.getGeneratedFolder();
+        if (generatedFolder != null) {
+            return generatedFolder.getLocation().makeAbsolute().toOSString();
         }
 
-        String sourcePath = resource.getLocation().makeAbsolute().toOSString();
         // As per the discussion with Tom Ball, the output of compilation is
-        // stored in the project's root source folder
+        // stored in the unit's source folder
         // See
         // https://groups.google.com/forum/?fromgroups=#!topic/j2objc-discuss/lJGzN-pxmkQ
-        String outputPath = resource.getProject().getFolder("src").getLocation().makeAbsolute().toOSString();
-
-        try {
-            String cmd = buildCommand(this.display, prefs, resource.getProject(), resource, sourcePath, outputPath);
-
-            monitor.subTask(resource.getName());
-
-            Process p = Runtime.getRuntime().exec(cmd);
-
-            Scanner scanInput = new Scanner(p.getInputStream());
-            Scanner scanErr = new Scanner(p.getErrorStream());
-
-            MessageConsoleStream mct = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE).newMessageStream();
-
-            mct.write(cmd);
-            mct.write(MessageUtil.NEW_LINE_CONSTANT);
-
-            while (scanInput.hasNext()) {
-                MessageUtil.resetConsoleColor(display, mct);
-                mct.write(scanInput.nextLine());
-                mct.write(MessageUtil.NEW_LINE_CONSTANT);
-            }
-
-            while (scanErr.hasNext()) {
-                MessageUtil.setConsoleColor(display, mct, SWT.COLOR_RED);
-                mct.write(scanErr.nextLine());
-                mct.write(MessageUtil.NEW_LINE_CONSTANT);
-            }
-
-            mct.write(MessageUtil.NEW_LINE_CONSTANT);
-
-        } catch (IOException e) {
-            LogUtil.logException(e);
-        }
-
-        monitor.worked(1);
-
-        return true;
+        SourceRoot root = profile.getSourceRoots().find(resource);
+        IContainer folder = root != null ? root.getFolder() : resource.getProject().getFolder("src");
+        return folder.getLocation().makeAbsolute().toOSString();
     }
 
     private void onCancelled() {
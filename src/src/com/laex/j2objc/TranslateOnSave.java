@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.MessageUtil;
+
+/**
+ * Translates saved units in the background when enabled in the preferences.
+ * Saved units are collected from resource changes and translated once no
+ * further unit of the project has been saved for a short quiet period, so a
+ * burst of saves such as Save All or a refactoring results in one translation
+ * of the units it touched. Nothing runs in the thread that saves.
+ */
+public final class TranslateOnSave {
+
+    /** The time without saves after which the saved units are translated, in milliseconds. */
+    private static final long QUIET_PERIOD = 750;
+
+    /** The saved units waiting to be translated, keyed by project. */
+    private static final Map<IProject, Set<IFile>> PENDING = new HashMap<IProject, Set<IFile>>();
+
+    /** The jobs waiting for the quiet period of each project. */
+    private static final Map<IProject, Job> DEBOUNCE_JOBS = new HashMap<IProject, Job>();
+
+    /** The resource listener. */
+    private static final IResourceChangeListener RESOURCE_LISTENER = new IResourceChangeListener() {
+        @Override
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getDelta() == null || !isEnabled()) {
+                return;
+            }
+
+            final Map<IProject, Set<IFile>> saved = new HashMap<IProject, Set<IFile>>();
+            try {
+                event.getDelta().accept(new IResourceDeltaVisitor() {
+                    @Override
+                    public boolean visit(IResourceDelta delta) throws CoreException {
+                        IResource resource = delta.getResource();
+
+                        if (resource.getType() == IResource.PROJECT) {
+                            IProject project = (IProject) resource;
+                            return project.isOpen() && project.hasNature(JavaCore.NATURE_ID);
+                        }
+
+                        if (resource.getType() != IResource.FILE) {
+                            return !resource.isDerived() && !resource.isTeamPrivateMember();
+                        }
+
+                        boolean changed = delta.getKind() == IResourceDelta.ADDED
+                                || (delta.getKind() == IResourceDelta.CHANGED && (delta.getFlags() & IResourceDelta.CONTENT) != 0);
+
+                        if (changed && JavaCore.isJavaLikeFileName(resource.getName())) {
+                            Set<IFile> files = saved.get(resource.getProject());
+                            if (files == null) {
+                                files = new LinkedHashSet<IFile>();
+                                saved.put(resource.getProject(), files);
+                            }
+                            files.add((IFile) resource);
+                        }
+                        return false;
+                    }
+                });
+            } catch (CoreException e) {
+                LogUtil.logException(e);
+                return;
+            }
+
+            for (Map.Entry<IProject, Set<IFile>> entry : saved.entrySet()) {
+                enqueue(entry.getKey(), entry.getValue());
+            }
+        }
+    };
+
+    /**
+     * Adds saved units of the project to the pending units and starts the
+     * quiet period of the project again.
+     *
+     * @param project
+     *            the project
+     * @param files
+     *            the saved units
+     */
+    private static void enqueue(final IProject project, Set<IFile> files) {
+        synchronized (PENDING) {
+            Set<IFile> pending = PENDING.get(project);
+            if (pending == null) {
+                pending = new LinkedHashSet<IFile>();
+                PENDING.put(project, pending);
+            }
+            pending.addAll(files);
+
+            Job job = DEBOUNCE_JOBS.get(project);
+            if (job == null) {
+                job = new Job("J2OBJC Translate on Save: " + project.getName()) {
+                    @Override
+                    protected IStatus run(IProgressMonitor monitor) {
+                        return translatePending(project, monitor);
+                    }
+                };
+                job.setSystem(true);
+                DEBOUNCE_JOBS.put(project, job);
+            }
+
+            // a save during the quiet period starts it again
+            job.cancel();
+            job.schedule(QUIET_PERIOD);
+        }
+    }
+
+    /**
+     * Schedules the translation of the pending units of the project, once the
+     * auto-build has updated the compile errors of the saved units.
+     *
+     * @param project
+     *            the project
+     * @param monitor
+     *            the monitor of the debounce job
+     * @return the status
+     */
+    private static IStatus translatePending(IProject project, IProgressMonitor monitor) {
+        // a save during the wait cancels it, and the units stay pending for the next run
+        try {
+            Job.getJobManager().join(ResourcesPlugin.FAMILY_AUTO_BUILD, monitor);
+        } catch (OperationCanceledException e) {
+            return Status.CANCEL_STATUS;
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        }
+
+        List<IResource> units;
+        synchronized (PENDING) {
+            Set<IFile> pending = PENDING.remove(project);
+            if (pending == null || pending.isEmpty()) {
+                return Status.OK_STATUS;
+            }
+            units = new ArrayList<IResource>(pending);
+        }
+
+        if (!project.isAccessible()) {
+            return Status.OK_STATUS;
+        }
+
+        try {
+            Display display = PlatformUI.getWorkbench().getDisplay();
+
+            CompileErrorFilter errorFilter = new CompileErrorFilter(project);
+            errorFilter.report(MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE), display, true);
+
+            TranslationJob.submit(new TranslationJob("J2OBJC Translate on Save", JavaCore.create(project), units, display, false, errorFilter));
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Checks whether saved units are translated and the compiler is set up.
+     *
+     * @return true, if is enabled
+     */
+    private static boolean isEnabled() {
+        return Activator.getDefault().getPreferenceStore().getBoolean(PreferenceConstants.TRANSLATE_ON_SAVE)
+                && StringUtils.isNotEmpty(Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.PATH_TO_COMPILER));
+    }
+
+    /**
+     * Starts listening for saved units.
+     */
+    public static void install() {
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(RESOURCE_LISTENER, IResourceChangeEvent.POST_CHANGE);
+    }
+
+    /**
+     * Stops listening for saved units and drops the units not translated yet.
+     */
+    public static void uninstall() {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(RESOURCE_LISTENER);
+
+        synchronized (PENDING) {
+            for (Job job : DEBOUNCE_JOBS.values()) {
+                job.cancel();
+            }
+            DEBOUNCE_JOBS.clear();
+            PENDING.clear();
+        }
+    }
+}
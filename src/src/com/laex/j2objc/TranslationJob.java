@@ -0,0 +1,807 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.MessageUtil;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Translates resources of a project and exports the outputs: the libraries,
+ * when the project translates them, then every unit of the resources the
+ * active profile translates, then the export and the refresh of the project.
+ * <p>
+ * Translation jobs belong to the {@link #FAMILY} family and hold a
+ * {@link TranslationRule} of their project, so two translations of a project
+ * never run at once. Submit them with {@link #submit(TranslationJob)}: a
+ * request for a project whose translation has not started yet is merged into
+ * it, and a request overlapping a running translation is queued with only
+ * the resources the running translation does not cover.
+ */
+public class TranslationJob extends Job {
+
+    /** The family of translation jobs. */
+    public static final Object FAMILY = TranslationJob.class;
+
+    /**
+     * The rule of the translation of a project. It conflicts only with the
+     * translation of the same project, so the translation does not hold the
+     * project's resources and saving and building go on meanwhile.
+     */
+    public static final class TranslationRule implements ISchedulingRule {
+
+        /** The project. */
+        private final IProject project;
+
+        /**
+         * Instantiates a new translation rule.
+         *
+         * @param project
+         *            the project
+         */
+        public TranslationRule(IProject project) {
+            this.project = project;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see
+         * org.eclipse.core.runtime.jobs.ISchedulingRule#contains(org.eclipse
+         * .core.runtime.jobs.ISchedulingRule)
+         */
+        @Override
+        public boolean contains(ISchedulingRule rule) {
+            return isConflicting(rule);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see
+         * org.eclipse.core.runtime.jobs.ISchedulingRule#isConflicting(org.eclipse
+         * .core.runtime.jobs.ISchedulingRule)
+         */
+        @Override
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule instanceof TranslationRule && ((TranslationRule) rule).project.equals(project);
+        }
+    }
+
+    /** The translations scheduled but not started, keyed by project. */
+    private static final Map<IProject, TranslationJob> WAITING = new HashMap<IProject, TranslationJob>();
+
+    /** The running translations, keyed by project. */
+    private static final Map<IProject, TranslationJob> RUNNING = new HashMap<IProject, TranslationJob>();
+
+    /** The java project. */
+    private final IJavaProject javaProject;
+
+    /** The resources to translate. */
+    private final List<IResource> resources;
+
+    /** When the translation started. */
+    private long startTime;
+
+    /** The display. */
+    private final Display display;
+
+    /** The resources whose translation is resumable, each with a journal of its own. */
+    private final List<IResource> resumable = new ArrayList<IResource>();
+
+    /** The checkpoint journals of the run, opened when it starts. */
+    private final List<CheckpointJournal> journals = new ArrayList<CheckpointJournal>();
+
+    /** The filter of the units with compile errors. */
+    private final CompileErrorFilter errorFilter;
+
+    /**
+     * Instantiates a new translation job.
+     *
+     * @param name
+     *            the name of the job
+     * @param javaProject
+     *            the java project
+     * @param resources
+     *            the resources to translate: the project, source folders,
+     *            packages or units
+     * @param display
+     *            the display
+     * @param resumable
+     *            whether the run journals the resources, offering to resume a
+     *            previous run of them that did not finish
+     * @param errorFilter
+     *            the filter of the units with compile errors, which are
+     *            skipped
+     */
+    public TranslationJob(String name, IJavaProject javaProject, List<IResource> resources, Display display, boolean resumable,
+            CompileErrorFilter errorFilter) {
+        super(name);
+        this.javaProject = javaProject;
+        this.resources = new ArrayList<IResource>(resources);
+        this.display = display;
+        if (resumable) {
+            this.resumable.addAll(resources);
+        }
+        this.errorFilter = errorFilter;
+        setRule(new TranslationRule(javaProject.getProject()));
+    }
+
+    /**
+     * Schedules the translation, merging it into a translation of the same
+     * project that has not started yet, or leaving out the resources a
+     * running translation of the project covers.
+     *
+     * @param job
+     *            the translation
+     * @return the job that translates the resources, which is not the job
+     *         submitted if it was merged or entirely covered
+     */
+    public static TranslationJob submit(TranslationJob job) {
+        IProject project = job.javaProject.getProject();
+
+        synchronized (WAITING) {
+            TranslationJob waiting = WAITING.get(project);
+            if (waiting != null) {
+                waiting.merge(job);
+                return waiting;
+            }
+
+            TranslationJob running = RUNNING.get(project);
+            if (running != null) {
+                job.removeCovered(running);
+                if (job.resources.isEmpty()) {
+                    return running;
+                }
+            }
+
+            WAITING.put(project, job);
+        }
+
+        // waits for the running translation of the project, if any, to finish
+        job.schedule();
+        return job;
+    }
+
+    /**
+     * Merges the resources and the journals of another translation into this
+     * one, which has not started yet.
+     *
+     * @param other
+     *            the other translation
+     */
+    private void merge(TranslationJob other) {
+        for (IResource resource : other.resources) {
+            if (!isCovered(resource, resources)) {
+                resources.add(resource);
+            }
+        }
+
+        resumable.addAll(other.resumable);
+
+        if (errorFilter != null && other.errorFilter != null) {
+            errorFilter.addAll(other.errorFilter);
+        }
+    }
+
+    /**
+     * Leaves out the resources the running translation covers, except for
+     * files changed since it started, and folders holding such files, which
+     * it may have translated before the change.
+     *
+     * @param running
+     *            the running translation
+     */
+    private void removeCovered(TranslationJob running) {
+        for (Iterator<IResource> it = resources.iterator(); it.hasNext();) {
+            IResource resource = it.next();
+
+            if (isCovered(resource, running.resources) && !isChangedSince(resource, running.startTime)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the resource, or a file in it, changed since the time.
+     *
+     * @param resource
+     *            the resource
+     * @param time
+     *            the time
+     * @return true, if is changed, or if the folder cannot be walked
+     */
+    private static boolean isChangedSince(IResource resource, final long time) {
+        if (resource.getType() == IResource.FILE) {
+            return resource.getLocalTimeStamp() >= time;
+        }
+
+        final boolean[] changed = new boolean[1];
+        try {
+            resource.accept(new IResourceVisitor() {
+                @Override
+                public boolean visit(IResource member) throws CoreException {
+                    if (member.getType() == IResource.FILE && member.getLocalTimeStamp() >= time) {
+                        changed[0] = true;
+                    }
+                    return !changed[0];
+                }
+            });
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+            return true;
+        }
+        return changed[0];
+    }
+
+    /**
+     * Checks whether one of the resources is or contains the resource.
+     *
+     * @param resource
+     *            the resource
+     * @param resources
+     *            the resources
+     * @return true, if is covered
+     */
+    private static boolean isCovered(IResource resource, List<IResource> resources) {
+        for (IResource other : resources) {
+            if (other.getFullPath().isPrefixOf(resource.getFullPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+     */
+    @Override
+    public boolean belongsTo(Object family) {
+        return family == FAMILY;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        IProject project = javaProject.getProject();
+
+        // requests from now on are queued behind this translation
+        synchronized (WAITING) {
+            if (WAITING.get(project) == this) {
+                WAITING.remove(project);
+            }
+            RUNNING.put(project, this);
+            startTime = System.currentTimeMillis();
+        }
+
+        try {
+            return translate(monitor);
+        } finally {
+            synchronized (WAITING) {
+                if (RUNNING.get(project) == this) {
+                    RUNNING.remove(project);
+                }
+            }
+        }
+    }
+
+    /**
+     * Translates the resources and exports the outputs.
+     *
+     * @param monitor
+     *            the monitor
+     * @return the status
+     */
+    private IStatus translate(IProgressMonitor monitor) {
+        final MessageConsole console = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE);
+        TranslationState state = null;
+
+        try {
+            TranslationProfile profile = TranslationProfiles.get(javaProject.getProject());
+
+            monitor.beginTask("J2OBJC Compiliation", countUnits(profile) + 3);
+
+            // some initial message plumbing
+            MessageConsoleStream mct = console.newMessageStream();
+            MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+            mct.write(String.format("Executing profile '%s' with switches: [ %s ]%s", profile.getName(), profile.getSwitches().trim(),
+                    MessageUtil.NEW_LINE_CONSTANT));
+            mct.write(String.format("Compiler: %s%s", profile.getCapabilities(), MessageUtil.NEW_LINE_CONSTANT));
+            if (!profile.getDroppedSwitches().isEmpty()) {
+                MessageConsoleStream dropped = console.newMessageStream();
+                MessageUtil.setConsoleColor(display, dropped, SWT.COLOR_RED);
+                dropped.write(String.format("Switches not supported by the compiler, left out: [ %s ]%s",
+                        StringUtils.join(profile.getDroppedSwitches(), " "), MessageUtil.NEW_LINE_CONSTANT));
+            }
+
+            openJournals(profile);
+
+            // translate library sources once, reusing cached bundles
+            List<File> libraryBundles = new ArrayList<File>();
+            if (PropertiesUtil.isTranslateLibraries(javaProject.getProject())) {
+                monitor.subTask("Translating libraries");
+                LibraryTranslationDelegate libraryDelegate = new LibraryTranslationDelegate(display, profile, monitor);
+                libraryBundles = libraryDelegate.translateLibraries(javaProject);
+            }
+
+            state = new TranslationState(profile, TranslationState.getOutputRoots(javaProject, profile));
+            ChangedFiles changedFiles = new ChangedFiles();
+
+            // the outputs of each unit are exported while the next ones are translated
+            String destinationDir = PropertiesUtil.getOutputDirectory(javaProject);
+            ExportPipeline pipeline = StringUtils.isNotEmpty(destinationDir) ? new ExportPipeline(createExporter(destinationDir)) : null;
+            OutputExporter.Report pipelined = null;
+
+            // units whose classes are all dead are not translated, and their old outputs go
+            final List<IResource> deadUnits = new ArrayList<IResource>();
+            ToObjectiveCDelegate delegate = new ToObjectiveCDelegate(display, profile, monitor, journals, state, errorFilter, changedFiles, pipeline);
+            try {
+                for (IResource resource : resources) {
+                    if (monitor.isCanceled()) {
+                        break;
+                    }
+
+                    profile.accept(resource, delegate, new IResourceVisitor() {
+                        @Override
+                        public boolean visit(IResource unit) throws CoreException {
+                            deadUnits.add(unit);
+                            return true;
+                        }
+                    });
+                }
+                delegate.finish();
+            } finally {
+                // what is queued is exported even when cancelled, so no unit is exported in part
+                if (pipeline != null) {
+                    pipelined = pipeline.finish();
+                }
+            }
+
+            // outputs that are not exported were staged, and only those that changed were written
+            if (!delegate.getWritten().getOutcomes().isEmpty()) {
+                report(console, "Generated files", delegate.getWritten());
+            }
+            removeDeadOutputs(console, state, deadUnits, changedFiles);
+            pruneOrphans(console, state, changedFiles);
+            monitor.worked(1);
+
+            // a finished run has nothing left to resume
+            if (!monitor.isCanceled()) {
+                for (CheckpointJournal journal : journals) {
+                    journal.reset();
+                }
+            }
+
+            // copy files to some external directory
+            monitor.subTask("Exporting Objective-C Classes");
+            export(console, profile, libraryBundles, pipelined, changedFiles);
+            monitor.worked(2);
+
+        } catch (InterruptedException e) {
+            LogUtil.logException(e);
+            return Status.CANCEL_STATUS;
+        } catch (CoreException ce) {
+            LogUtil.logException(ce);
+            return Status.CANCEL_STATUS;
+        } catch (IOException e) {
+            LogUtil.logException(e);
+            return Status.CANCEL_STATUS;
+        } finally {
+            for (CheckpointJournal journal : journals) {
+                journal.close();
+            }
+            saveState(state);
+            monitor.done();
+        }
+
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Opens the journals of the resumable resources, offering to resume a
+     * previous run of each that did not finish. No other translation of the
+     * project runs meanwhile, so a journal read back here is never live.
+     *
+     * @param profile
+     *            the profile
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    private void openJournals(TranslationProfile profile) throws IOException, CoreException {
+        for (IResource resource : resumable) {
+            final CheckpointJournal journal = new CheckpointJournal(resource, profile);
+            journals.add(journal);
+
+            if (journal.getCompletedCount() > 0) {
+                display.syncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (MessageUtil.messageResumeTranslation(display.getActiveShell(), journal.getCompletedCount()) == SWT.NO) {
+                            journal.reset();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Counts the units the translation visits, walking only the source roots
+     * and the folders the scope does not exclude.
+     *
+     * @param profile
+     *            the profile
+     * @return the number of units
+     * @throws CoreException
+     *             the core exception
+     */
+    private int countUnits(TranslationProfile profile) throws CoreException {
+        final int[] count = new int[1];
+
+        for (IResource resource : resources) {
+            profile.accept(resource, new IResourceVisitor() {
+                @Override
+                public boolean visit(IResource unit) throws CoreException {
+                    count[0]++;
+                    return true;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Removes the outputs of the units left out because all their classes are
+     * dead.
+     *
+     * @param console
+     *            the console
+     * @param state
+     *            the state
+     * @param deadUnits
+     *            the dead units
+     * @param changedFiles
+     *            the files changed by the run
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void removeDeadOutputs(MessageConsole console, TranslationState state, List<IResource> deadUnits, ChangedFiles changedFiles)
+            throws IOException {
+        if (deadUnits.isEmpty()) {
+            return;
+        }
+
+        int deleted = 0;
+        for (IResource unit : deadUnits) {
+            List<File> removed = state.removeOutputs(unit);
+            changedFiles.addAll(removed);
+            deleted += removed.size();
+        }
+
+        MessageConsoleStream mct = console.newMessageStream();
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+        mct.write(String.format("Skipped %d file(s) the dead code report lists as unused, removed %d old output(s)%s", deadUnits.size(), deleted,
+                MessageUtil.NEW_LINE_CONSTANT));
+    }
+
+    /**
+     * Removes the outputs of the units deleted or renamed since they were
+     * translated, from the project and the output directory.
+     *
+     * @param console
+     *            the console
+     * @param state
+     *            the state
+     * @param changedFiles
+     *            the files changed by the run
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void pruneOrphans(MessageConsole console, TranslationState state, ChangedFiles changedFiles) throws IOException {
+        List<File> deleted = state.pruneOrphans();
+        if (deleted.isEmpty()) {
+            return;
+        }
+
+        changedFiles.addAll(deleted);
+
+        MessageConsoleStream mct = console.newMessageStream();
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+        mct.write(String.format("Removed %d output(s) of units that no longer exist%s", deleted.size(), MessageUtil.NEW_LINE_CONSTANT));
+    }
+
+    /**
+     * Saves the state.
+     *
+     * @param state
+     *            the state, or null if the run did not get as far as loading
+     *            it
+     */
+    private void saveState(TranslationState state) {
+        if (state == null) {
+            return;
+        }
+
+        try {
+            state.save();
+        } catch (IOException e) {
+            LogUtil.logException(e);
+        }
+    }
+
+    /**
+     * Exports the outputs and refreshes the files the translation and the
+     * export changed. The export and all the resource changes run in one
+     * workspace operation, so listeners get one delta per translation, in a
+     * job of its own with the rules of the folders of those files only, as
+     * the rule of this job does not contain them; this job waits for it, so
+     * the next translation of the project does not start before the export
+     * is done.
+     *
+     * @param console
+     *            the console
+     * @param profile
+     *            the profile
+     * @param libraryBundles
+     *            the translated library bundles
+     * @param pipelined
+     *            the outcomes of the outputs exported during the
+     *            translation, or null if the outputs are not exported
+     * @param changedFiles
+     *            the files changed by the translation, to which the export
+     *            adds its own
+     * @throws InterruptedException
+     *             the interrupted exception
+     * @throws CoreException
+     *             the core exception
+     */
+    private void export(final MessageConsole console, final TranslationProfile profile, final List<File> libraryBundles,
+            final OutputExporter.Report pipelined, final ChangedFiles changedFiles) throws InterruptedException, CoreException {
+        final String destinationDir = PropertiesUtil.getOutputDirectory(javaProject);
+        final List<IContainer> changedContainers = getChangedContainers(profile, destinationDir);
+
+        WorkspaceJob exportJob = new WorkspaceJob("J2OBJC Export: " + javaProject.getElementName()) {
+            @Override
+            public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+                try {
+                    doOutput(console, profile, destinationDir, pipelined, changedFiles);
+
+                    if (!libraryBundles.isEmpty() && StringUtils.isNotEmpty(destinationDir)) {
+                        OutputExporter.Report report = LibraryTranslationDelegate.exportBundles(libraryBundles, destinationDir,
+                                PropertiesUtil.getExportMode(javaProject.getProject()));
+                        report(console, "Libraries", report);
+                        changedFiles.addAll(report.getChangedFiles());
+                    }
+                } catch (IOException e) {
+                    LogUtil.logException(e);
+                }
+
+                // refresh only what the translation and the export changed
+                changedFiles.refresh(monitor);
+
+                // keeps the outputs out of searches, validation and version control
+                IFolder generatedFolder = profile.getGeneratedFolder();
+                if (generatedFolder != null && generatedFolder.exists() && !generatedFolder.isDerived()) {
+                    generatedFolder.setDerived(true, monitor);
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        exportJob.setRule(getExportRule(profile, changedContainers));
+        exportJob.setSystem(true);
+        exportJob.schedule();
+        exportJob.join();
+    }
+
+    /**
+     * Gets the folders of the workspace the translation and the export
+     * change: those j2objc writes to and the output directory, when it is in
+     * the workspace.
+     *
+     * @param profile
+     *            the profile
+     * @param destinationDir
+     *            the output directory, or empty
+     * @return the folders
+     */
+    private static List<IContainer> getChangedContainers(TranslationProfile profile, String destinationDir) {
+        List<IContainer> containers = new ArrayList<IContainer>(profile.getGeneratedContainers());
+
+        if (StringUtils.isNotEmpty(destinationDir)) {
+            IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+            for (IContainer container : root.findContainersForLocationURI(new File(destinationDir).toURI())) {
+                containers.add(container);
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Gets the rule of the export: the rules to refresh the changed folders,
+     * or their parents for folders new to the workspace, and to mark the
+     * generated folder derived.
+     *
+     * @param profile
+     *            the profile
+     * @param changedContainers
+     *            the changed folders
+     * @return the rule
+     */
+    private static ISchedulingRule getExportRule(TranslationProfile profile, List<IContainer> changedContainers) {
+        IResourceRuleFactory ruleFactory = ResourcesPlugin.getWorkspace().getRuleFactory();
+        List<ISchedulingRule> rules = new ArrayList<ISchedulingRule>();
+
+        for (IContainer container : changedContainers) {
+            for (IContainer c = container; c != null && !c.exists(); c = c.getParent()) {
+                addRule(rules, ruleFactory.refreshRule(c.getParent()));
+            }
+            addRule(rules, ruleFactory.refreshRule(container));
+        }
+
+        if (profile.getGeneratedFolder() != null) {
+            addRule(rules, ruleFactory.derivedRule(profile.getGeneratedFolder()));
+        }
+        return MultiRule.combine(rules.toArray(new ISchedulingRule[rules.size()]));
+    }
+
+    /**
+     * Adds a rule, unless it is null.
+     *
+     * @param rules
+     *            the rules
+     * @param rule
+     *            the rule, or null if none is needed
+     */
+    private static void addRule(List<ISchedulingRule> rules, ISchedulingRule rule) {
+        if (rule != null) {
+            rules.add(rule);
+        }
+    }
+
+    /**
+     * Moves the outputs left in the folders j2objc writes them to into the
+     * output directory, writing only the outputs that are new or changed.
+     * Most outputs were moved by the pipeline during the translation; this
+     * picks up the rest, such as those of a run interrupted before.
+     *
+     * @param console
+     *            the console
+     * @param profile
+     *            the profile
+     * @param destinationDir
+     *            the output directory, or empty if the outputs are not
+     *            exported
+     * @param pipelined
+     *            the outcomes of the outputs exported during the
+     *            translation, or null
+     * @param changedFiles
+     *            the files changed by the run
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    private void doOutput(MessageConsole console, TranslationProfile profile, String destinationDir, OutputExporter.Report pipelined,
+            ChangedFiles changedFiles) throws IOException, CoreException {
+        if (StringUtils.isEmpty(destinationDir)) {
+            MessageConsoleStream mct = console.newMessageStream();
+            MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+            mct.write("No Output directory specified. Files will not be exported.");
+            return;
+        }
+
+        OutputExporter.Report report = createExporter(destinationDir).export(profile.getGeneratedRoots());
+        if (pipelined != null) {
+            pipelined.add(report);
+            report = pipelined;
+        }
+        report(console, destinationDir, report);
+        changedFiles.addAll(report.getChangedFiles());
+    }
+
+    /**
+     * Creates the exporter of the outputs, as set for the project.
+     *
+     * @param destinationDir
+     *            the output directory
+     * @return the exporter
+     * @throws CoreException
+     *             the core exception
+     */
+    private OutputExporter createExporter(String destinationDir) throws CoreException {
+        // the folders j2objc writes to are left clean
+        boolean compareContents = PropertiesUtil.isExportCompareContents(javaProject.getProject());
+        OutputExporter.Mode mode = PropertiesUtil.getExportMode(javaProject.getProject());
+        return new OutputExporter(new File(destinationDir), true, compareContents, mode);
+    }
+
+    /**
+     * Writes the outcome of every file written or failed, and the counts of
+     * all outcomes, to the console.
+     *
+     * @param console
+     *            the console
+     * @param label
+     *            what was exported
+     * @param report
+     *            the report
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private void report(MessageConsole console, String label, OutputExporter.Report report) throws IOException {
+        MessageConsoleStream mct = console.newMessageStream();
+
+        for (Map.Entry<File, OutputExporter.Outcome> entry : report.getOutcomes().entrySet()) {
+            OutputExporter.Outcome outcome = entry.getValue();
+            if (outcome == OutputExporter.Outcome.UNCHANGED) {
+                continue;
+            }
+
+            if (outcome == OutputExporter.Outcome.FAILED) {
+                MessageUtil.setConsoleColor(display, mct, SWT.COLOR_RED);
+                mct.write(String.format("%s %s: %s%s", outcome, entry.getKey(), report.getError(entry.getKey()), MessageUtil.NEW_LINE_CONSTANT));
+            } else {
+                MessageUtil.resetConsoleColor(display, mct);
+                mct.write(String.format("%s %s%s", outcome, entry.getKey(), MessageUtil.NEW_LINE_CONSTANT));
+            }
+        }
+
+        MessageUtil.setConsoleColor(display, mct, SWT.COLOR_BLUE);
+        if (report.getNote() != null) {
+            mct.write(report.getNote() + MessageUtil.NEW_LINE_CONSTANT);
+        }
+        int added = report.count(OutputExporter.Outcome.ADDED);
+        int updated = report.count(OutputExporter.Outcome.UPDATED);
+        mct.write(String.format("Exported %s: %d of %d output(s) changed (%d added, %d updated), %d unchanged, %d failed in %d ms%s", label,
+                added + updated, report.getOutcomes().size(), added, updated, report.count(OutputExporter.Outcome.UNCHANGED),
+                report.count(OutputExporter.Outcome.FAILED), report.getDuration(), MessageUtil.NEW_LINE_CONSTANT));
+    }
+}
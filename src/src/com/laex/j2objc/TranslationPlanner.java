@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.laex.j2objc.TranslationState.Reason;
+
+/**
+ * Works out which units a translation would translate, and why, without
+ * launching j2objc.
+ */
+public class TranslationPlanner implements IResourceVisitor {
+
+    /** The state. */
+    private TranslationState state;
+
+    /** The monitor. */
+    private IProgressMonitor monitor;
+
+    /** The units to translate and the reason for each. */
+    private Map<IResource, Reason> toTranslate = new LinkedHashMap<IResource, Reason>();
+
+    /** The number of units that are up to date. */
+    private int upToDate;
+
+    /** The filter of the units with compile errors. */
+    private CompileErrorFilter errorFilter;
+
+    /** The number of units skipped for their compile errors. */
+    private int broken;
+
+    /** The number of units whose classes are all dead. */
+    private int dead;
+
+    /**
+     * Instantiates a new translation planner.
+     *
+     * @param state
+     *            the state
+     * @param monitor
+     *            the monitor
+     * @param errorFilter
+     *            the filter of the units with compile errors
+     */
+    public TranslationPlanner(TranslationState state, IProgressMonitor monitor, CompileErrorFilter errorFilter) {
+        this.state = state;
+        this.monitor = monitor;
+        this.errorFilter = errorFilter;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.core.resources.IResourceVisitor#visit(org.eclipse.core.resources
+     * .IResource)
+     */
+    @Override
+    public boolean visit(IResource resource) throws CoreException {
+        if (monitor.isCanceled()) {
+            return false;
+        }
+
+        if (!(resource.getType() == IResource.FILE)) {
+            return true;
+        }
+
+        if (!JavaCore.isJavaLikeFileName(resource.getName())) {
+            return true;
+        }
+
+        if (errorFilter.isBroken(resource)) {
+            broken++;
+            return true;
+        }
+
+        Reason reason = state.check(resource);
+        if (reason == Reason.UP_TO_DATE) {
+            upToDate++;
+        } else {
+            toTranslate.put(resource, reason);
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the units to translate and the reason for each.
+     *
+     * @return the units
+     */
+    public Map<IResource, Reason> getToTranslate() {
+        return toTranslate;
+    }
+
+    /**
+     * Gets the number of units that are up to date.
+     *
+     * @return the up to date count
+     */
+    public int getUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * Gets the number of units skipped for their compile errors.
+     *
+     * @return the broken count
+     */
+    public int getBroken() {
+        return broken;
+    }
+
+    /**
+     * Gets the number of units skipped because all their classes are dead.
+     *
+     * @return the dead count
+     */
+    public int getDead() {
+        return dead;
+    }
+
+    /**
+     * Gets the visitor counting the units whose classes are all dead.
+     *
+     * @return the visitor
+     */
+    public IResourceVisitor getDeadUnitVisitor() {
+        return new IResourceVisitor() {
+            @Override
+            public boolean visit(IResource resource) throws CoreException {
+                dead++;
+                return !monitor.isCanceled();
+            }
+        };
+    }
+
+    /**
+     * Estimates how long the translation takes, from the duration of each
+     * unit's last translation or, for new units, the average duration.
+     *
+     * @return the estimate in milliseconds, or -1 if nothing has been
+     *         translated before
+     */
+    public long getEstimatedDuration() {
+        long average = state.getAverageDuration();
+        if (average < 0) {
+            return -1;
+        }
+
+        long total = 0;
+        for (IResource unit : toTranslate.keySet()) {
+            long duration = state.getDuration(unit);
+            total += duration < 0 ? average : duration;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ICompilationUnit;
+
+import com.laex.j2objc.util.HashUtil;
+import com.laex.j2objc.util.ProcessUtil;
+
+/**
+ * Translates the contents of a unit as it is being edited, saved or not,
+ * without touching the outputs of the project. The contents are written to a
+ * scratch folder and translated alone with the switches and classpath of the
+ * project's active profile, which is resolved once per change of the
+ * settings. Results are kept by the hash of the contents, so going back to
+ * an earlier version of a unit shows its translation at once.
+ */
+public final class TranslationPreview {
+
+    /**
+     * The translation of one version of a unit.
+     */
+    public static final class Result {
+
+        /** The header, or null if j2objc wrote none. */
+        private final String header;
+
+        /** The implementation, or null if j2objc wrote none. */
+        private final String implementation;
+
+        /** The output of j2objc. */
+        private final String log;
+
+        /** The time the translation took, in milliseconds. */
+        private final long duration;
+
+        /**
+         * Instantiates a new result.
+         *
+         * @param header
+         *            the header
+         * @param implementation
+         *            the implementation
+         * @param log
+         *            the output of j2objc
+         * @param duration
+         *            the time the translation took
+         */
+        private Result(String header, String implementation, String log, long duration) {
+            this.header = header;
+            this.implementation = implementation;
+            this.log = log;
+            this.duration = duration;
+        }
+
+        /**
+         * Gets the header.
+         *
+         * @return the header, or null if j2objc wrote none
+         */
+        public String getHeader() {
+            return header;
+        }
+
+        /**
+         * Gets the implementation.
+         *
+         * @return the implementation, or null if j2objc wrote none
+         */
+        public String getImplementation() {
+            return implementation;
+        }
+
+        /**
+         * Gets the output of j2objc.
+         *
+         * @return the log
+         */
+        public String getLog() {
+            return log;
+        }
+
+        /**
+         * Gets the time the translation took.
+         *
+         * @return the duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Checks whether j2objc translated the unit.
+         *
+         * @return true, if successful
+         */
+        public boolean isTranslated() {
+            return header != null || implementation != null;
+        }
+    }
+
+    /** The name of the folder holding the scratch folders in the state location. */
+    private static final String PREVIEW_FOLDER = "preview";
+
+    /** The number of results kept. */
+    private static final int CACHE_SIZE = 32;
+
+    /** The results keyed by the settings and the contents they were translated from, least recently used first. */
+    private static final Map<String, Result> RESULTS = new LinkedHashMap<String, Result>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Instantiates a new translation preview.
+     */
+    private TranslationPreview() {
+    }
+
+    /**
+     * Translates the current contents of the unit, or of its working copy if
+     * it is open in an editor.
+     *
+     * @param unit
+     *            the unit
+     * @return the result
+     * @throws CoreException
+     *             the core exception
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static Result translate(ICompilationUnit unit) throws CoreException, IOException {
+        IFile file = (IFile) unit.getResource();
+        TranslationProfile profile = TranslationProfiles.get(file.getProject());
+        String contents = unit.getSource();
+
+        String dependencies = ClasspathResolver.getFingerprint(file.getProject());
+        String key = HashUtil.md5(profile.getKey() + "\n" + profile.getClasspath() + "\n" + dependencies + "\n" + file.getFullPath() + "\n"
+                + contents);
+        synchronized (RESULTS) {
+            Result result = RESULTS.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        File scratch = createScratchFolder(key);
+        try {
+            // the package folders keep the output layout j2objc expects
+            String packagePath = unit.getParent().getElementName().replace('.', File.separatorChar);
+            File sourceFolder = new File(scratch, "src");
+            File source = new File(new File(sourceFolder, packagePath), file.getName());
+            File outputFolder = new File(scratch, "out");
+            outputFolder.mkdirs();
+
+            FileUtils.writeStringToFile(source, contents, profile.getEncoding(file));
+
+            String cmd = profile.buildCommand(file, source.getAbsolutePath(), outputFolder.getAbsolutePath());
+
+            long start = System.currentTimeMillis();
+            String log = ProcessUtil.capture(cmd.trim().split("\\s+"));
+            long duration = System.currentTimeMillis() - start;
+
+            String baseName = FilenameUtils.getBaseName(file.getName());
+            Result result = new Result(readOutput(outputFolder, baseName, "h"), readOutput(outputFolder, baseName, "m"), log, duration);
+
+            synchronized (RESULTS) {
+                RESULTS.put(key, result);
+            }
+            return result;
+        } finally {
+            FileUtils.deleteQuietly(scratch);
+        }
+    }
+
+    /**
+     * Discards the results.
+     */
+    public static void clear() {
+        synchronized (RESULTS) {
+            RESULTS.clear();
+        }
+    }
+
+    /**
+     * Creates a scratch folder of its own for a translation, so previews of
+     * several views never share one.
+     *
+     * @param key
+     *            the key of the translation
+     * @return the folder
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static File createScratchFolder(String key) throws IOException {
+        File folder = Activator.getDefault().getStateLocation().append(PREVIEW_FOLDER).append(key + "-" + System.nanoTime()).toFile();
+        if (!folder.mkdirs()) {
+            throw new IOException("Unable to create " + folder);
+        }
+        return folder;
+    }
+
+    /**
+     * Reads the output of the unit with the extension, wherever the switches
+     * made j2objc write it.
+     *
+     * @param outputFolder
+     *            the output folder
+     * @param baseName
+     *            the name of the unit without its extension
+     * @param extension
+     *            the extension
+     * @return the contents, or null if j2objc wrote no such output
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static String readOutput(File outputFolder, String baseName, String extension) throws IOException {
+        Collection<File> outputs = FileUtils.listFiles(outputFolder, new String[] { extension }, true);
+
+        File found = null;
+        for (File output : outputs) {
+            if (FilenameUtils.getBaseName(output.getName()).equals(baseName)) {
+                found = output;
+                break;
+            }
+            if (found == null) {
+                found = output;
+            }
+        }
+        return found != null ? FileUtils.readFileToString(found) : null;
+    }
+}
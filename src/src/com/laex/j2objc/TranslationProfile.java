@@ -0,0 +1,652 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.JavaCore;
+
+import com.laex.j2objc.SourceRoots.SourceRoot;
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.HashUtil;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Everything a translation of a project's units needs that does not depend on
+ * the unit itself: the resolved switches, prefixes file, classpath,
+ * bootclasspath and encoding rules of one of the project's named profiles.
+ * Profiles are immutable, so one profile can be shared by any number of
+ * concurrent translations. Use {@link TranslationProfiles#get(IProject)} to
+ * obtain the cached profile of a project's active profile.
+ */
+public final class TranslationProfile {
+
+    /** The hashes of the contents of the files the settings name, keyed by path, size and modification time. */
+    private static final Map<String, String> CONTENT_HASHES = new ConcurrentHashMap<String, String>();
+
+    /** The switches that only change what j2objc prints, not what it writes. */
+    private static final String[] DIAGNOSTIC_SWITCHES = { PreferenceConstants.VERBOSE, PreferenceConstants.QUIET, PreferenceConstants.TIMING_INFO };
+
+    /** The project. */
+    private final IProject project;
+
+    /** The name of the profile. */
+    private final String name;
+
+    /** The project properties, including the path to the compiler. */
+    private final Map<String, String> properties;
+
+    /** The j2objc executable. */
+    private final String compiler;
+
+    /** The switches. */
+    private final String switches;
+
+    /** The configured switches the compiler does not support, which are left out. */
+    private final List<String> droppedSwitches = new ArrayList<String>();
+
+    /** The prefixes file, or null if the project has none. */
+    private final String prefixesFile;
+
+    /** The classpath. */
+    private final String classpath;
+
+    /** The bootclasspath. */
+    private final String bootclasspath;
+
+    /** The encoding of files without an encoding of their own. */
+    private final String defaultEncoding;
+
+    /** The capabilities of the compiler. */
+    private final CompilerCapabilities capabilities;
+
+    /** The filter of the units in the translation scope. */
+    private final ScopeFilter scopeFilter;
+
+    /** The annotations excluding the units whose top-level types all carry one. */
+    private final List<String> excludedAnnotations;
+
+    /** The source roots of the project. */
+    private final SourceRoots sourceRoots;
+
+    /** The folder j2objc writes the outputs to, or null if it writes them into the source roots. */
+    private final IFolder generatedFolder;
+
+    /** The key identifying the settings of the profile. */
+    private final String key;
+
+    /**
+     * Resolves the profile of the project.
+     *
+     * @param project
+     *            the project
+     * @param name
+     *            the name of the profile, which must be the active profile
+     * @param pathToCompiler
+     *            the path to the compiler
+     * @throws CoreException
+     *             the core exception
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    TranslationProfile(IProject project, String name, String pathToCompiler) throws CoreException, IOException {
+        Map<String, String> props = new HashMap<String, String>(PropertiesUtil.getProjectProperties(project));
+        props.put(PreferenceConstants.PATH_TO_COMPILER, pathToCompiler);
+
+        this.project = project;
+        this.name = name;
+        this.properties = Collections.unmodifiableMap(props);
+        this.compiler = new Path(pathToCompiler).append(PreferenceConstants.J2_OBJC_COMPILER).toOSString();
+        this.prefixesFile = PropertiesUtil.doesExistPrefixPropertiesFile(project) ? PropertiesUtil.getPrefixPropertiesFile(project) : null;
+        this.classpath = ClasspathResolver.getClasspath(project);
+        this.bootclasspath = StringUtils.defaultString(props.get(PreferenceConstants.BOOTCLASSPATH));
+        this.defaultEncoding = project.getDefaultCharset();
+        this.capabilities = CompilerCapabilities.get(pathToCompiler);
+        this.switches = buildSwitches(props, prefixesFile, capabilities, droppedSwitches);
+        this.sourceRoots = new SourceRoots(project);
+        this.generatedFolder = resolveGeneratedFolder(project, sourceRoots);
+        this.excludedAnnotations = Collections.unmodifiableList(PropertiesUtil.getScopeAnnotations(project));
+        this.scopeFilter = new ScopeFilter(PropertiesUtil.getScopeIncludes(project), PropertiesUtil.getScopeExcludes(project));
+        this.key = HashUtil.md5(outputSettings(props).toString());
+    }
+
+    /**
+     * Builds the command translating a unit.
+     *
+     * @param unit
+     *            the unit
+     * @param sourcePath
+     *            the source path
+     * @param outputPath
+     *            the output path
+     * @return the command
+     * @throws CoreException
+     *             the core exception
+     */
+    public String buildCommand(IFile unit, String sourcePath, String outputPath) throws CoreException {
+        StringBuilder sb = new StringBuilder(getBaseCommand());
+
+        sb.append(PreferenceConstants.ENCODING).append(" ").append(getEncoding(unit)).append(" ");
+        sb.append(PreferenceConstants.OUTPUT_DIR).append(" ").append(outputPath).append(" ");
+        sb.append(sourcePath);
+
+        return sb.toString();
+    }
+
+    /**
+     * Builds the command translating several units with the same encoding in
+     * one invocation. Use only when the compiler supports multiple inputs.
+     *
+     * @param sourcePaths
+     *            the source paths of the units
+     * @param encoding
+     *            the encoding of the units
+     * @param outputPath
+     *            the output path
+     * @param argfile
+     *            the file the source paths are written to, or null to pass
+     *            them on the command line; use only when the compiler
+     *            supports argument files
+     * @return the command
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public String buildBatchCommand(List<String> sourcePaths, String encoding, String outputPath, File argfile) throws IOException {
+        StringBuilder sb = new StringBuilder(getBaseCommand());
+
+        sb.append(PreferenceConstants.ENCODING).append(" ").append(encoding).append(" ");
+        sb.append(PreferenceConstants.OUTPUT_DIR).append(" ").append(outputPath).append(" ");
+
+        if (argfile != null) {
+            FileUtils.writeLines(argfile, sourcePaths);
+            sb.append("@").append(argfile.getAbsolutePath());
+        } else {
+            sb.append(StringUtils.join(sourcePaths, " "));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Gets the compiler, classpath and switches every command starts with.
+     *
+     * @return the base command
+     */
+    public String getBaseCommand() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(compiler).append(" ");
+
+        if (StringUtils.isNotEmpty(classpath)) {
+            sb.append(PreferenceConstants.CLASSPAPTH).append(" ").append(classpath).append(" ");
+        }
+
+        sb.append(switches);
+        return sb.toString();
+    }
+
+    /**
+     * Gets the encoding of the unit: the encoding set explicitly on the file,
+     * otherwise the project's default encoding.
+     *
+     * @param unit
+     *            the unit
+     * @return the encoding
+     * @throws CoreException
+     *             the core exception
+     */
+    public String getEncoding(IFile unit) throws CoreException {
+        String charset = unit.getCharset(false);
+        return charset != null ? charset : defaultEncoding;
+    }
+
+    /**
+     * Gets the project.
+     *
+     * @return the project
+     */
+    public IProject getProject() {
+        return project;
+    }
+
+    /**
+     * Gets the name of the profile.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the project properties, including the path to the compiler.
+     *
+     * @return the properties
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Gets the capabilities of the compiler.
+     *
+     * @return the capabilities
+     */
+    public CompilerCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Gets the switches.
+     *
+     * @return the switches
+     */
+    public String getSwitches() {
+        return switches;
+    }
+
+    /**
+     * Gets the configured switches the compiler does not support.
+     *
+     * @return the switches left out of the command
+     */
+    public List<String> getDroppedSwitches() {
+        return Collections.unmodifiableList(droppedSwitches);
+    }
+
+    /**
+     * Gets the prefixes file.
+     *
+     * @return the prefixes file, or null if the project has none
+     */
+    public String getPrefixesFile() {
+        return prefixesFile;
+    }
+
+    /**
+     * Gets the classpath.
+     *
+     * @return the classpath
+     */
+    public String getClasspath() {
+        return classpath;
+    }
+
+    /**
+     * Gets the bootclasspath.
+     *
+     * @return the bootclasspath
+     */
+    public String getBootclasspath() {
+        return bootclasspath;
+    }
+
+    /**
+     * Gets the filter of the units in the translation scope.
+     *
+     * @return the scope filter
+     */
+    public ScopeFilter getScopeFilter() {
+        return scopeFilter;
+    }
+
+    /**
+     * Gets the source roots of the project.
+     *
+     * @return the source roots
+     */
+    public SourceRoots getSourceRoots() {
+        return sourceRoots;
+    }
+
+    /**
+     * Gets the folder j2objc writes the outputs to.
+     *
+     * @return the generated folder, or null if j2objc writes the outputs into
+     *         the source roots
+     */
+    public IFolder getGeneratedFolder() {
+        return generatedFolder;
+    }
+
+    /**
+     * Gets the folders j2objc writes the outputs to: the generated folder or,
+     * when there is none, the source roots.
+     *
+     * @return the locations of the folders
+     */
+    public List<File> getGeneratedRoots() {
+        if (generatedFolder == null) {
+            return sourceRoots.getLocations();
+        }
+        return Collections.singletonList(generatedFolder.getLocation().toFile());
+    }
+
+    /**
+     * Gets the folders j2objc writes the outputs to, as resources.
+     *
+     * @return the folders
+     */
+    public List<IContainer> getGeneratedContainers() {
+        List<IContainer> containers = new ArrayList<IContainer>();
+        if (generatedFolder != null) {
+            containers.add(generatedFolder);
+        } else {
+            for (SourceRoot root : sourceRoots.getRoots()) {
+                containers.add(root.getFolder());
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Walks the units of the selection the profile translates: those in a
+     * source root and in the translation scope, without the units whose
+     * top-level types all carry an excluding annotation and the units whose
+     * classes are all dead.
+     *
+     * @param selection
+     *            the selection
+     * @param unitVisitor
+     *            the visitor of the units
+     * @throws CoreException
+     *             the core exception
+     */
+    public void accept(IResource selection, IResourceVisitor unitVisitor) throws CoreException {
+        accept(selection, unitVisitor, null);
+    }
+
+    /**
+     * Walks the units of the selection the profile translates, like
+     * {@link #accept(IResource, IResourceVisitor)}, and passes the units left
+     * out because all their classes are dead to a visitor of their own.
+     *
+     * @param selection
+     *            the selection
+     * @param unitVisitor
+     *            the visitor of the units
+     * @param deadUnitVisitor
+     *            the visitor of the dead units, or null
+     * @throws CoreException
+     *             the core exception
+     */
+    public void accept(IResource selection, final IResourceVisitor unitVisitor, final IResourceVisitor deadUnitVisitor) throws CoreException {
+        final Set<IPath> annotatedUnits = excludedAnnotations.isEmpty() ? Collections.<IPath> emptySet() : AnnotatedUnits.get(
+                JavaCore.create(project), excludedAnnotations);
+        final DeadCodeReport deadCodeReport = getDeadCodeReport();
+
+        if (annotatedUnits.isEmpty() && deadCodeReport.isEmpty()) {
+            sourceRoots.accept(selection, scopeFilter, unitVisitor);
+            return;
+        }
+
+        sourceRoots.accept(selection, scopeFilter, new IResourceVisitor() {
+            @Override
+            public boolean visit(IResource unit) throws CoreException {
+                if (annotatedUnits.contains(unit.getFullPath())) {
+                    return true;
+                }
+
+                if (deadCodeReport.isDeadUnit(unit)) {
+                    return deadUnitVisitor == null || deadUnitVisitor.visit(unit);
+                }
+
+                return unitVisitor.visit(unit);
+            }
+        });
+    }
+
+    /**
+     * Gets the dead code report of the profile, parsed again if the usage
+     * file changed.
+     *
+     * @return the dead code report, empty if the profile has none
+     */
+    public DeadCodeReport getDeadCodeReport() {
+        return DeadCodeReport.get(properties.get(PreferenceConstants.DEAD_CODE_REPORT));
+    }
+
+    /**
+     * Gets the key identifying what the outputs depend on besides the units
+     * and the classpath: the settings of the profile, the current contents of
+     * the prefixes, dead code report and mapping files they name, and the
+     * version, size and modification time of the compiler, so a compiler
+     * upgraded in place changes the key too.
+     *
+     * @return the key
+     */
+    public String getKey() {
+        File executable = new File(compiler);
+
+        StringBuilder sb = new StringBuilder(key);
+        sb.append('\n').append(capabilities.getVersion()).append(':').append(executable.length()).append(':').append(executable.lastModified());
+        sb.append('\n').append(hashContents(prefixesFile));
+        sb.append('\n').append(hashContents(properties.get(PreferenceConstants.DEAD_CODE_REPORT)));
+        sb.append('\n').append(hashContents(properties.get(PreferenceConstants.METHOD_MAPPING_FILE)));
+        return HashUtil.md5(sb.toString());
+    }
+
+    /**
+     * Gets the settings the outputs depend on: all of them but the switches
+     * that only change what j2objc prints.
+     *
+     * @param props
+     *            the project properties
+     * @return the settings, sorted by key
+     */
+    private static Map<String, String> outputSettings(Map<String, String> props) {
+        Map<String, String> settings = new TreeMap<String, String>(props);
+        for (String key : DIAGNOSTIC_SWITCHES) {
+            settings.remove(key);
+        }
+        return settings;
+    }
+
+    /**
+     * Hashes the contents of a file, reusing the hash while the size and
+     * modification time of the file are unchanged.
+     *
+     * @param path
+     *            the path of the file, or null
+     * @return the hash, or empty if there is no such file
+     */
+    private static String hashContents(String path) {
+        if (StringUtils.isBlank(path)) {
+            return "";
+        }
+
+        File file = new File(path.trim());
+        if (!file.isFile()) {
+            return "";
+        }
+
+        String stat = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        String hash = CONTENT_HASHES.get(stat);
+        if (hash == null) {
+            try {
+                hash = HashUtil.md5(file);
+            } catch (IOException e) {
+                // changes with the file all the same
+                return stat;
+            }
+            CONTENT_HASHES.put(stat, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Resolves the generated folder of the project. A folder that is or
+     * contains a source root or an output folder is ignored, so generated
+     * files never go where they would be marked derived along with sources.
+     *
+     * @param project
+     *            the project
+     * @param sourceRoots
+     *            the source roots
+     * @return the folder, or null if j2objc writes the outputs into the
+     *         source roots
+     * @throws CoreException
+     *             the core exception
+     */
+    private static IFolder resolveGeneratedFolder(IProject project, SourceRoots sourceRoots) throws CoreException {
+        String name = PropertiesUtil.getGeneratedFolder(project);
+        if (StringUtils.isBlank(name)) {
+            return null;
+        }
+
+        IFolder folder = project.getFolder(new Path(name.trim()));
+        return sourceRoots.isReserved(folder.getFullPath()) ? null : folder;
+    }
+
+    /**
+     * Builds the switches.
+     *
+     * @param prefs
+     *            the prefs
+     * @param prefixesFile
+     *            the prefixes file
+     * @param capabilities
+     *            the capabilities of the compiler
+     * @param dropped
+     *            the switches left out because the compiler does not support
+     *            them
+     * @return the string
+     */
+    private static String buildSwitches(Map<String, String> prefs, String prefixesFile, CompilerCapabilities capabilities, List<String> dropped) {
+        StringBuilder sb = new StringBuilder();
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.GENERATE_DEBUGGING_SUPPORT, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_PACKAGE_DIRECTORIES, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.NO_PACKAGE_DIRECTORIES, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.X_LANGUAGE_OBJECTIVE_C, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_REFERENCE_COUNTING, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.USE_REFERENCE_COUNTING, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_ARC, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.USE_ARC, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.USE_GC, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.USE_GC, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.ERROR_TO_WARNING, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.ERROR_TO_WARNING, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.QUIET, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.QUIET, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.VERBOSE, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.VERBOSE, dropped);
+
+        /* INLINE FIELD ACCESS is no longer present in 0.8.7, so it is only passed to compilers that list it */
+        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_INLINE_FIELD_ACCESS, prefs)) {
+            if (capabilities.isProbed())
+                appendSwitch(sb, capabilities, PreferenceConstants.NO_INLINE_FIELD_ACCESS, dropped);
+            else
+                dropped.add(PreferenceConstants.NO_INLINE_FIELD_ACCESS);
+        }
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.NO_GENERATE_TEST_MAIN, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.NO_GENERATE_TEST_MAIN, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.IGNORE_MISSING_IMPORTS, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.IGNORE_MISSING_IMPORTS, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.PRINT_CONVERTED_SOURCES, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.PRINT_CONVERTED_SOURCES, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.MEM_DEBUG, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.MEM_DEBUG, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_NATIVE_STUBS, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.GENERATE_NATIVE_STUBS, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.TIMING_INFO, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.TIMING_INFO, dropped);
+
+        /* 0.8.7 changes */
+        if (PropertiesUtil.hasProperty(PreferenceConstants.BUILD_CLOSURE, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.BUILD_CLOSURE, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.GENERATE_DEPRECATED, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.GENERATE_DEPRECATED, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.STRIP_REFLECTION, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.STRIP_REFLECTION, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.STRIP_GWT_INCOMPATIBLE, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.STRIP_GWT_INCOMPATIBLE, dropped);
+
+        if (PropertiesUtil.hasProperty(PreferenceConstants.SEGMENTED_HEADERS, prefs))
+            appendSwitch(sb, capabilities, PreferenceConstants.SEGMENTED_HEADERS, dropped);
+
+        if (PropertiesUtil.hasTextProperty(PreferenceConstants.DEAD_CODE_REPORT, prefs))
+            sb.append(PreferenceConstants.DEAD_CODE_REPORT).append(" ").append(prefs.get(PreferenceConstants.DEAD_CODE_REPORT)).append(" ");
+
+        if (PropertiesUtil.hasTextProperty(PreferenceConstants.METHOD_MAPPING_FILE, prefs))
+            sb.append(PreferenceConstants.METHOD_MAPPING_FILE).append(" ").append(prefs.get(PreferenceConstants.METHOD_MAPPING_FILE)).append(" ");
+
+        if (PropertiesUtil.hasTextProperty(PreferenceConstants.BOOTCLASSPATH, prefs))
+            sb.append(PreferenceConstants.BOOTCLASSPATH).append(":").append(prefs.get(PreferenceConstants.BOOTCLASSPATH)).append(" ");
+
+        if (prefixesFile != null)
+            sb.append(PreferenceConstants.PREFIXES).append(" ").append(prefixesFile).append(" ");
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the switch, unless the compiler is known not to support it.
+     *
+     * @param sb
+     *            the sb
+     * @param capabilities
+     *            the capabilities of the compiler
+     * @param flag
+     *            the flag
+     * @param dropped
+     *            the switches left out, to which the flag is added if it is
+     *            not supported
+     */
+    private static void appendSwitch(StringBuilder sb, CompilerCapabilities capabilities, String flag, List<String> dropped) {
+        if (capabilities.isSupported(flag)) {
+            sb.append(flag).append(" ");
+        } else {
+            dropped.add(flag);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Caches the {@link TranslationProfile} of every project. A profile is
+ * discarded when the project's J2ObjC properties are persisted, when its
+ * classpath is resolved again by {@link ClasspathResolver}, when its prefixes
+ * file or encodings change, when the project is closed,
+ * deleted or renamed, and when the path to the compiler changes.
+ */
+public final class TranslationProfiles {
+
+    /** The profiles keyed by project name and profile name. */
+    private static final Map<String, TranslationProfile> PROFILES = new ConcurrentHashMap<String, TranslationProfile>();
+
+    /** The separator of the project name and the profile name in a key. */
+    private static final String KEY_SEPARATOR = "/";
+
+    /** Incremented on every invalidation, so a profile resolved meanwhile is not cached. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /** The settings file holding the project's encodings. */
+    private static final String ENCODING_SETTINGS = ".settings/org.eclipse.core.resources.prefs";
+
+    /** The resource listener. */
+    private static final IResourceChangeListener RESOURCE_LISTENER = new IResourceChangeListener() {
+        @Override
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getDelta() == null) {
+                return;
+            }
+
+            for (IResourceDelta projectDelta : event.getDelta().getAffectedChildren()) {
+                IProject project = (IProject) projectDelta.getResource();
+
+                boolean projectChanged = projectDelta.getKind() != IResourceDelta.CHANGED
+                        || (projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0;
+
+                if (projectChanged || isChanged(projectDelta, PropertiesUtil.constructPrefixPropertiesFilePath(project))
+                        || isChanged(projectDelta, ENCODING_SETTINGS)) {
+                    invalidate(project);
+                }
+            }
+        }
+
+        private boolean isChanged(IResourceDelta projectDelta, String fileName) {
+            return projectDelta.findMember(new Path(fileName)) != null;
+        }
+    };
+
+    /** The preference listener. */
+    private static final IPropertyChangeListener PREFERENCE_LISTENER = new IPropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent event) {
+            if (PreferenceConstants.PATH_TO_COMPILER.equals(event.getProperty())) {
+                invalidateAll();
+            }
+        }
+    };
+
+    /**
+     * Gets the active profile of the project, resolving it if it is not
+     * cached. Switching back to a profile reuses its cached resolution.
+     *
+     * @param project
+     *            the project
+     * @return the profile
+     * @throws CoreException
+     *             the core exception
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static TranslationProfile get(IProject project) throws CoreException, IOException {
+        String name = PropertiesUtil.getActiveProfile(project);
+        String key = project.getName() + KEY_SEPARATOR + name;
+
+        // a compiler replaced in place is probed again
+        TranslationProfile profile = PROFILES.get(key);
+        if (profile != null && !profile.getCapabilities().isStale()) {
+            return profile;
+        }
+
+        long generation = GENERATION.get();
+        String pathToCompiler = Activator.getDefault().getPreferenceStore().getString(PreferenceConstants.PATH_TO_COMPILER);
+        profile = new TranslationProfile(project, name, pathToCompiler);
+
+        synchronized (PROFILES) {
+            if (generation == GENERATION.get()) {
+                PROFILES.put(key, profile);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Discards all the profiles of the project.
+     *
+     * @param project
+     *            the project
+     */
+    public static void invalidate(IResource project) {
+        String prefix = project.getName() + KEY_SEPARATOR;
+
+        synchronized (PROFILES) {
+            GENERATION.incrementAndGet();
+            for (Iterator<String> it = PROFILES.keySet().iterator(); it.hasNext();) {
+                if (it.next().startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all the profiles.
+     */
+    public static void invalidateAll() {
+        synchronized (PROFILES) {
+            GENERATION.incrementAndGet();
+            PROFILES.clear();
+        }
+    }
+
+    /**
+     * Starts listening for changes that invalidate profiles.
+     */
+    public static void install() {
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(RESOURCE_LISTENER, IResourceChangeEvent.POST_CHANGE);
+        Activator.getDefault().getPreferenceStore().addPropertyChangeListener(PREFERENCE_LISTENER);
+    }
+
+    /**
+     * Stops listening for changes.
+     */
+    public static void uninstall() {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(RESOURCE_LISTENER);
+        Activator.getDefault().getPreferenceStore().removePropertyChangeListener(PREFERENCE_LISTENER);
+        invalidateAll();
+    }
+}
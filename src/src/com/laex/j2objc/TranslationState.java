@@ -0,0 +1,847 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeParameter;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import com.laex.j2objc.preferences.PreferenceConstants;
+import com.laex.j2objc.util.HashUtil;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * Remembers, per project and profile, the inputs each unit was last translated
+ * with and how long it took. A unit whose content, switches and dependencies are
+ * unchanged and whose outputs still exist does not need to be translated
+ * again.
+ * <p>
+ * The signature of each unit's types is remembered too. When the signature of
+ * a unit changed, or the unit was deleted, the translated units that mention
+ * one of its types by name, and in turn the units that mention theirs, are
+ * marked to be translated again, as their outputs may depend on it.
+ * <p>
+ * A manifest of each profile, kept beside its state, remembers the outputs
+ * each unit was last translated to by the profile, so the outputs of a unit
+ * deleted or renamed since can be found and removed from the folders of that
+ * profile, whichever profile is active when the unit goes.
+ */
+public class TranslationState {
+
+    /**
+     * The reason a unit has to be translated.
+     */
+    public enum Reason {
+
+        /** The unit is up to date. */
+        UP_TO_DATE("up to date"),
+
+        /** The unit has never been translated. */
+        NEW("never translated"),
+
+        /** The content of the unit changed. */
+        CONTENT_CHANGED("content changed"),
+
+        /** The switches changed. */
+        SWITCHES_CHANGED("switches changed"),
+
+        /** The classpath changed. */
+        DEPENDENCIES_CHANGED("dependencies changed"),
+
+        /** A unit of the project it uses changed its signature or was deleted. */
+        USED_UNIT_CHANGED("a unit it uses changed"),
+
+        /** An output of the unit is missing. */
+        OUTPUT_MISSING("output missing");
+
+        /** The description. */
+        private final String description;
+
+        /**
+         * Instantiates a new reason.
+         *
+         * @param description
+         *            the description
+         */
+        private Reason(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Gets the description.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /** The name of the folder holding the states in the state location. */
+    private static final String STATE_FOLDER = "state";
+
+    /** The separator of the project name and the profile name in the name of a state file. */
+    private static final String PROFILE_SEPARATOR = "@";
+
+    /** The separator of the fields of an entry. */
+    private static final String SEPARATOR = "|";
+
+    /** The extension of a state file. */
+    private static final String STATE_EXTENSION = ".properties";
+
+    /** The extension of a manifest file. */
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    /** The separator of the outputs in a manifest entry. */
+    private static final String OUTPUT_SEPARATOR = ",";
+
+    /** The stamp of a unit marked to be translated again because a unit it uses changed. */
+    private static final String USED_UNIT_CHANGED_STAMP = "used-unit-changed";
+
+    /** The state file. */
+    private File file;
+
+    /** The entries keyed by the unit's path. */
+    private Properties entries = new Properties();
+
+    /** The manifest file. */
+    private File manifestFile;
+
+    /** The outputs of each unit keyed by the unit's path. */
+    private Properties manifest = new Properties();
+
+    /** The key of the switches. */
+    private String switchesKey;
+
+    /** The key of the dependencies. */
+    private String dependenciesKey;
+
+    /** Whether the implementation files are Objective-C++. */
+    private boolean objectiveCpp;
+
+    /** Whether the outputs are generated without package directories. */
+    private boolean noPackageDirectories;
+
+    /** The folders the outputs of a unit may be found in. */
+    private List<File> outputRoots = new ArrayList<File>();
+
+    /** The folders j2objc writes the outputs to. */
+    private List<File> generatedRoots = new ArrayList<File>();
+
+    /**
+     * Loads the state of the project's profile. Every profile has a state of
+     * its own, so switching profiles does not invalidate the units translated
+     * with the other profile.
+     *
+     * @param profile
+     *            the profile the translation runs with
+     * @param outputRoots
+     *            the folders the outputs of a unit may be found in
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public TranslationState(TranslationProfile profile, List<File> outputRoots) throws IOException, CoreException {
+        this(profile, outputRoots, true);
+    }
+
+    /**
+     * Loads the state of the project's profile.
+     *
+     * @param profile
+     *            the profile the translation runs with
+     * @param outputRoots
+     *            the folders the outputs of a unit may be found in
+     * @param markDependents
+     *            whether the units that use a changed unit are marked to be
+     *            translated again, which reads the sources of the translated
+     *            units when a signature changed; a plan leaves it to the
+     *            translation
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     * @throws CoreException
+     *             the core exception
+     */
+    public TranslationState(TranslationProfile profile, List<File> outputRoots, boolean markDependents) throws IOException,
+            CoreException {
+        IProject project = profile.getProject();
+        Map<String, String> prefs = profile.getProperties();
+
+        this.file = getStateFolder().append(fileName(project, profile.getName(), STATE_EXTENSION)).toFile();
+        this.manifestFile = getStateFolder().append(fileName(project, profile.getName(), MANIFEST_EXTENSION)).toFile();
+        this.switchesKey = profile.getKey();
+        this.dependenciesKey = ClasspathResolver.getFingerprint(project);
+        this.objectiveCpp = PropertiesUtil.hasProperty(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP, prefs);
+        this.noPackageDirectories = PropertiesUtil.hasProperty(PreferenceConstants.NO_PACKAGE_DIRECTORIES, prefs);
+        this.outputRoots.addAll(outputRoots);
+        this.generatedRoots.addAll(profile.getGeneratedRoots());
+
+        load(entries, file);
+        load(manifest, manifestFile);
+        if (markDependents) {
+            markDependents();
+        }
+
+        // units translated before the manifest was kept
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        for (String key : entries.stringPropertyNames()) {
+            IFile unit = root.getFile(Path.fromPortableString(key));
+            if (!manifest.containsKey(key) && unit.exists()) {
+                manifest.setProperty(key, StringUtils.join(getOutputs(unit, objectiveCpp, noPackageDirectories), OUTPUT_SEPARATOR));
+            }
+        }
+    }
+
+    /**
+     * Checks whether the unit has to be translated.
+     *
+     * @param unit
+     *            the unit
+     * @return the reason, {@link Reason#UP_TO_DATE} if it does not
+     */
+    public synchronized Reason check(IResource unit) {
+        String entry = entries.getProperty(key(unit));
+        if (entry == null) {
+            return Reason.NEW;
+        }
+
+        String[] fields = entry.split("\\" + SEPARATOR);
+        if (fields.length < 4) {
+            return Reason.NEW;
+        }
+
+        if (fields[0].equals(USED_UNIT_CHANGED_STAMP)) {
+            return Reason.USED_UNIT_CHANGED;
+        }
+
+        if (!fields[0].equals(stamp(unit))) {
+            return Reason.CONTENT_CHANGED;
+        }
+
+        if (!fields[1].equals(switchesKey)) {
+            return Reason.SWITCHES_CHANGED;
+        }
+
+        if (!fields[2].equals(dependenciesKey)) {
+            return Reason.DEPENDENCIES_CHANGED;
+        }
+
+        if (!hasOutputs(unit)) {
+            return Reason.OUTPUT_MISSING;
+        }
+
+        return Reason.UP_TO_DATE;
+    }
+
+    /**
+     * Records a successful translation of the unit.
+     *
+     * @param unit
+     *            the unit
+     * @param duration
+     *            the duration in milliseconds
+     */
+    public synchronized void record(IResource unit, long duration) {
+        String entry = stamp(unit) + SEPARATOR + switchesKey + SEPARATOR + dependenciesKey + SEPARATOR + duration + SEPARATOR
+                + StringUtils.defaultString(signature(unit));
+        entries.setProperty(key(unit), entry);
+        manifest.setProperty(key(unit), StringUtils.join(getOutputs(unit, objectiveCpp, noPackageDirectories), OUTPUT_SEPARATOR));
+    }
+
+    /**
+     * Gets how long the last translation of the unit took.
+     *
+     * @param unit
+     *            the unit
+     * @return the duration in milliseconds, or -1 if unknown
+     */
+    public synchronized long getDuration(IResource unit) {
+        String entry = entries.getProperty(key(unit));
+        if (entry == null) {
+            return -1;
+        }
+
+        String[] fields = entry.split("\\" + SEPARATOR);
+        try {
+            return fields.length < 4 ? -1 : Long.parseLong(fields[3]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the average duration of a translation.
+     *
+     * @return the average duration in milliseconds, or -1 if nothing has been
+     *         translated yet
+     */
+    public synchronized long getAverageDuration() {
+        long total = 0;
+        int count = 0;
+
+        for (Object value : entries.values()) {
+            String[] fields = ((String) value).split("\\" + SEPARATOR);
+            if (fields.length < 4) {
+                continue;
+            }
+
+            try {
+                total += Long.parseLong(fields[3]);
+                count++;
+            } catch (NumberFormatException e) {
+                // ignore the malformed entry
+            }
+        }
+
+        return count == 0 ? -1 : total / count;
+    }
+
+    /**
+     * Deletes the outputs of a unit that is no longer translated from the
+     * output folders and the folders j2objc writes to, and forgets the unit,
+     * so it is translated again once it is needed. An output another unit
+     * that exists was translated to, as when two units of different packages
+     * share a name and the outputs have no package directories, is kept.
+     *
+     * @param unit
+     *            the unit
+     * @return the files deleted
+     */
+    public synchronized List<File> removeOutputs(IResource unit) {
+        String unitKey = key(unit);
+        entries.remove(unitKey);
+        manifest.remove(unitKey);
+
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        Set<String> kept = new HashSet<String>();
+        for (String key : manifest.stringPropertyNames()) {
+            if (root.getFile(Path.fromPortableString(key)).exists()) {
+                kept.addAll(Arrays.asList(StringUtils.split(manifest.getProperty(key), OUTPUT_SEPARATOR)));
+            }
+        }
+
+        return deleteOutputs(getOutputs(unit, objectiveCpp, noPackageDirectories), kept);
+    }
+
+    /**
+     * Deletes the outputs of the units in the manifest that no longer exist
+     * from the output folders and the folders j2objc writes to, and forgets
+     * the units. An output a unit that exists was translated to, as when a
+     * unit moved to another package and the outputs have no package
+     * directories, is kept.
+     *
+     * @return the files deleted
+     */
+    public synchronized List<File> pruneOrphans() {
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+
+        List<String> orphans = new ArrayList<String>();
+        Set<String> kept = new HashSet<String>();
+        for (String key : manifest.stringPropertyNames()) {
+            String[] outputs = StringUtils.split(manifest.getProperty(key), OUTPUT_SEPARATOR);
+            if (root.getFile(Path.fromPortableString(key)).exists()) {
+                kept.addAll(Arrays.asList(outputs));
+            } else {
+                orphans.add(key);
+            }
+        }
+
+        List<File> deleted = new ArrayList<File>();
+        for (String key : orphans) {
+            deleted.addAll(deleteOutputs(StringUtils.split(manifest.getProperty(key), OUTPUT_SEPARATOR), kept));
+            manifest.remove(key);
+            entries.remove(key);
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes outputs from the output folders and the folders j2objc writes
+     * to.
+     *
+     * @param outputs
+     *            the relative paths of the outputs
+     * @param kept
+     *            the relative paths of the outputs not to delete
+     * @return the files deleted
+     */
+    private List<File> deleteOutputs(String[] outputs, Set<String> kept) {
+        List<File> roots = new ArrayList<File>(outputRoots);
+        roots.addAll(generatedRoots);
+
+        List<File> deleted = new ArrayList<File>();
+        for (String output : outputs) {
+            if (kept.contains(output)) {
+                continue;
+            }
+
+            for (File root : roots) {
+                File file = new File(root, output);
+                if (file.delete()) {
+                    deleted.add(file);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Gets the files j2objc writes for a unit below a folder.
+     *
+     * @param unit
+     *            the unit
+     * @param root
+     *            the folder j2objc writes to
+     * @return the files
+     */
+    public synchronized List<File> getOutputFiles(IResource unit, File root) {
+        List<File> files = new ArrayList<File>();
+        for (String output : getOutputs(unit, objectiveCpp, noPackageDirectories)) {
+            files.add(new File(root, output));
+        }
+        return files;
+    }
+
+    /**
+     * Saves the state.
+     *
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public synchronized void save() throws IOException {
+        store(entries, file);
+        store(manifest, manifestFile);
+    }
+
+    /**
+     * Gets the folders the outputs of the project's units may be found in:
+     * the export directory of the active profile they are moved to or, when
+     * the profile has none, the generated folder of the profile or the
+     * source roots j2objc writes to.
+     *
+     * @param javaProject
+     *            the java project
+     * @param profile
+     *            the translation profile of the project
+     * @return the output roots
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<File> getOutputRoots(IJavaProject javaProject, TranslationProfile profile) throws CoreException {
+        List<File> roots = new ArrayList<File>();
+
+        String destinationDir = PropertiesUtil.getOutputDirectory(javaProject);
+        if (StringUtils.isNotEmpty(destinationDir)) {
+            roots.add(new File(destinationDir));
+        } else {
+            roots.addAll(profile.getGeneratedRoots());
+        }
+        return roots;
+    }
+
+    /**
+     * Discards the state of every profile of the project, so that every unit
+     * is translated again. The manifests are kept, so the outputs of units
+     * deleted meanwhile are still removed.
+     *
+     * @param project
+     *            the project
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void clear(IProject project) throws CoreException {
+        for (String profile : PropertiesUtil.getProfiles(project)) {
+            getStateFolder().append(fileName(project, profile, STATE_EXTENSION)).toFile().delete();
+        }
+    }
+
+    /**
+     * Marks the translated units that use a unit whose signature changed
+     * since it was translated, or that was deleted, to be translated again.
+     * A unit uses another when its source mentions one of the other's types
+     * by name; the units marked are followed in turn, as types reached
+     * through them, such as inherited members, may matter as well. The
+     * marks are saved, so they outlive a run that ends before the units are
+     * translated.
+     */
+    private void markDependents() {
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+
+        Set<String> names = new HashSet<String>();
+        Map<String, IFile> candidates = new LinkedHashMap<String, IFile>();
+        for (String key : entries.stringPropertyNames()) {
+            IFile unit = root.getFile(Path.fromPortableString(key));
+            String[] fields = entries.getProperty(key).split("\\" + SEPARATOR);
+
+            if (!unit.exists()) {
+                names.add(unit.getFullPath().removeFileExtension().lastSegment());
+            } else if (fields.length < 4 || fields[0].equals(USED_UNIT_CHANGED_STAMP)) {
+                // translated again anyway
+                continue;
+            } else if (fields[0].equals(stamp(unit))) {
+                candidates.put(key, unit);
+            } else {
+                // a unit recorded without its signature counts as changed
+                String signature = signature(unit);
+                if (fields.length < 5 || signature == null || !fields[4].equals(signature)) {
+                    names.addAll(getTypeNames(unit));
+                }
+            }
+        }
+
+        Set<String> followed = new HashSet<String>();
+        Map<String, String> sources = new HashMap<String, String>();
+        while (!names.isEmpty() && !candidates.isEmpty()) {
+            followed.addAll(names);
+
+            List<String> quoted = new ArrayList<String>();
+            for (String name : names) {
+                quoted.add(Pattern.quote(name));
+            }
+            Pattern mention = Pattern.compile("\\b(" + StringUtils.join(quoted, "|") + ")\\b");
+
+            Set<String> next = new HashSet<String>();
+            for (Iterator<Map.Entry<String, IFile>> it = candidates.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, IFile> candidate = it.next();
+
+                String source = sources.get(candidate.getKey());
+                if (source == null) {
+                    source = read(candidate.getValue());
+                    sources.put(candidate.getKey(), source);
+                }
+
+                if (mention.matcher(source).find()) {
+                    String entry = entries.getProperty(candidate.getKey());
+                    entries.setProperty(candidate.getKey(), USED_UNIT_CHANGED_STAMP + entry.substring(entry.indexOf(SEPARATOR)));
+                    next.addAll(getTypeNames(candidate.getValue()));
+                    it.remove();
+                }
+            }
+
+            next.removeAll(followed);
+            names = next;
+        }
+    }
+
+    /**
+     * Gets the names of the top-level types of the unit, and the name of the
+     * unit itself.
+     *
+     * @param unit
+     *            the unit
+     * @return the names
+     */
+    private static Set<String> getTypeNames(IFile unit) {
+        Set<String> names = new HashSet<String>();
+        names.add(unit.getFullPath().removeFileExtension().lastSegment());
+
+        ICompilationUnit cu = JavaCore.createCompilationUnitFrom(unit);
+        try {
+            for (IType type : cu.getTypes()) {
+                names.add(type.getElementName());
+            }
+        } catch (JavaModelException e) {
+            // the name of the unit is the name of its public type
+        }
+        return names;
+    }
+
+    /**
+     * Computes the signature of the unit's types: everything about them
+     * another unit can depend on, which is their declarations and the
+     * constants of their fields, but not the bodies of their methods.
+     *
+     * @param unit
+     *            the unit
+     * @return the signature, or null if the unit cannot be read
+     */
+    private static String signature(IResource unit) {
+        if (!(unit instanceof IFile)) {
+            return null;
+        }
+
+        ICompilationUnit cu = JavaCore.createCompilationUnitFrom((IFile) unit);
+        StringBuilder sb = new StringBuilder();
+        try {
+            appendSignature(cu.getTypes(), sb);
+        } catch (JavaModelException e) {
+            return null;
+        }
+        return HashUtil.md5(sb.toString());
+    }
+
+    /**
+     * Appends the signature of types and their member types.
+     *
+     * @param types
+     *            the types
+     * @param sb
+     *            the string builder
+     * @throws JavaModelException
+     *             the java model exception
+     */
+    private static void appendSignature(IType[] types, StringBuilder sb) throws JavaModelException {
+        for (IType type : types) {
+            sb.append(type.getFlags()).append(' ').append(type.getFullyQualifiedName()).append(' ').append(type.getSuperclassTypeSignature())
+                    .append(' ').append(Arrays.toString(type.getSuperInterfaceTypeSignatures())).append(' ')
+                    .append(typeParameters(type.getTypeParameters())).append('\n');
+
+            for (IField field : type.getFields()) {
+                sb.append(field.getFlags()).append(' ').append(field.getElementName()).append(' ').append(field.getTypeSignature()).append(' ')
+                        .append(field.getConstant()).append('\n');
+            }
+
+            for (IMethod method : type.getMethods()) {
+                sb.append(method.getFlags()).append(' ').append(method.getElementName()).append(' ').append(method.getSignature()).append(' ')
+                        .append(Arrays.toString(method.getExceptionTypes())).append(' ')
+                        .append(typeParameters(method.getTypeParameters())).append('\n');
+            }
+
+            appendSignature(type.getTypes(), sb);
+        }
+    }
+
+    /**
+     * Describes type parameters by their names and bounds.
+     *
+     * @param typeParameters
+     *            the type parameters
+     * @return the string
+     * @throws JavaModelException
+     *             the java model exception
+     */
+    private static String typeParameters(ITypeParameter[] typeParameters) throws JavaModelException {
+        StringBuilder sb = new StringBuilder();
+        for (ITypeParameter typeParameter : typeParameters) {
+            sb.append(typeParameter.getElementName()).append(Arrays.toString(typeParameter.getBounds())).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the source of a unit.
+     *
+     * @param unit
+     *            the unit
+     * @return the source, empty if it cannot be read
+     */
+    private static String read(IFile unit) {
+        InputStream is = null;
+        try {
+            is = unit.getContents(true);
+            return IOUtils.toString(is, unit.getCharset());
+        } catch (CoreException e) {
+            return "";
+        } catch (IOException e) {
+            return "";
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Loads the properties from the file, if it exists.
+     *
+     * @param properties
+     *            the properties
+     * @param file
+     *            the file
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void load(Properties properties, File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+
+        InputStream is = new FileInputStream(file);
+        try {
+            properties.load(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Stores the properties in the file.
+     *
+     * @param properties
+     *            the properties
+     * @param file
+     *            the file
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    private static void store(Properties properties, File file) throws IOException {
+        file.getParentFile().mkdirs();
+
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        OutputStream os = new FileOutputStream(tmpFile);
+        try {
+            properties.store(os, "");
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+
+        // replace the file only once it has been written completely
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file);
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Unable to save " + file);
+        }
+    }
+
+    /**
+     * Gets the folder holding the states.
+     *
+     * @return the state folder
+     */
+    private static IPath getStateFolder() {
+        return Activator.getDefault().getStateLocation().append(STATE_FOLDER);
+    }
+
+    /**
+     * Gets the name of the state file or the manifest of the project's
+     * profile. The default profile keeps the names files had before profiles
+     * were introduced.
+     *
+     * @param project
+     *            the project
+     * @param profile
+     *            the profile
+     * @param extension
+     *            the extension of the file
+     * @return the file name
+     */
+    private static String fileName(IProject project, String profile, String extension) {
+        if (PropertiesUtil.DEFAULT_PROFILE.equals(profile)) {
+            return project.getName() + extension;
+        }
+        return project.getName() + PROFILE_SEPARATOR + profile + extension;
+    }
+
+    /**
+     * Gets the files j2objc generates for the unit, relative to the output
+     * folder.
+     *
+     * @param unit
+     *            the unit
+     * @param objectiveCpp
+     *            whether the implementation files are Objective-C++
+     * @param noPackageDirectories
+     *            whether the outputs are generated without package directories
+     * @return the relative paths of the outputs
+     */
+    public static String[] getOutputs(IResource unit, boolean objectiveCpp, boolean noPackageDirectories) {
+        String name = unit.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot == -1 ? name : name.substring(0, dot);
+
+        String folder = "";
+        if (!noPackageDirectories && unit instanceof IFile) {
+            IJavaElement element = JavaCore.create((IFile) unit);
+            if (element instanceof ICompilationUnit && element.getParent() instanceof IPackageFragment) {
+                String packageName = element.getParent().getElementName();
+                if (packageName.length() > 0) {
+                    folder = packageName.replace('.', '/') + "/";
+                }
+            }
+        }
+
+        return new String[] { folder + baseName + ".h", folder + baseName + (objectiveCpp ? ".mm" : ".m") };
+    }
+
+    /**
+     * Checks whether all the outputs of the unit exist in one of the output
+     * folders.
+     *
+     * @param unit
+     *            the unit
+     * @return true, if successful
+     */
+    private boolean hasOutputs(IResource unit) {
+        for (String output : getOutputs(unit, objectiveCpp, noPackageDirectories)) {
+            boolean found = false;
+            for (File root : outputRoots) {
+                if (new File(root, output).isFile()) {
+                    found = true;
+                    break;
+                }
+            }
+
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The key of the unit.
+     *
+     * @param unit
+     *            the unit
+     * @return the string
+     */
+    private static String key(IResource unit) {
+        return unit.getFullPath().toPortableString();
+    }
+
+    /**
+     * The stamp identifying the content of the unit.
+     *
+     * @param unit
+     *            the unit
+     * @return the string
+     */
+    private static String stamp(IResource unit) {
+        return unit.getModificationStamp() + ":" + unit.getLocalTimeStamp();
+    }
+}
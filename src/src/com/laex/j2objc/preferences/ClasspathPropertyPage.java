@@ -50,6 +50,7 @@ import org.eclipse.ui.IWorkbenchPropertyPage;
 import org.eclipse.ui.dialogs.PropertyPage;
 import org.eclipse.ui.internal.SharedImages;
 
+import com.laex.j2objc.ClasspathResolver;
 import com.laex.j2objc.util.LogUtil;
 import com.laex.j2objc.util.PropertiesUtil;
 
@@ -69,6 +70,12 @@ public class ClasspathPropertyPage extends PropertyPage implements IWorkbenchPro
 
     private Button btnUseAllClasspathLibraries;
 
+    /** The btn translate libraries. */
+    private Button btnTranslateLibraries;
+
+    /** The btn compact classpath. */
+    private Button btnCompactClasspath;
+
     /**
      * The Class TableLabelProvider.
      */
@@ -177,6 +184,12 @@ public class ClasspathPropertyPage extends PropertyPage implements IWorkbenchPro
         });
         btnUseAllClasspathLibraries.setText("Use all classpath libraries");
 
+        btnTranslateLibraries = new Button(container, SWT.CHECK);
+        btnTranslateLibraries.setText("Translate library sources once and reuse the translated output");
+
+        btnCompactClasspath = new Button(container, SWT.CHECK);
+        btnCompactClasspath.setText("Merge the selected entries into a single cached classpath archive");
+
         Composite composite = new Composite(container, SWT.NONE);
         composite.setLayout(new FillLayout(SWT.HORIZONTAL));
         GridData gd_composite = new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1);
@@ -313,6 +326,15 @@ public class ClasspathPropertyPage extends PropertyPage implements IWorkbenchPro
 
         PropertiesUtil.persistClasspathEntries(javaPrj.getJavaProject().getProject(), checkboxTableViewer.getCheckedElements());
 
+        try {
+            PropertiesUtil.persistClasspathOptions(javaPrj.getJavaProject().getProject(), btnTranslateLibraries.getSelection(),
+                    btnCompactClasspath.getSelection());
+            ClasspathResolver.invalidate(javaPrj.getJavaProject().getProject());
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+            return false;
+        }
+
         return super.performOk();
     }
 
@@ -335,6 +357,8 @@ public class ClasspathPropertyPage extends PropertyPage implements IWorkbenchPro
         }
 
         btnUseAllClasspathLibraries.setSelection(checkboxTableViewer.getCheckedElements().length == classpathRef.size());
+        btnTranslateLibraries.setSelection(PropertiesUtil.isTranslateLibraries(javaPrj.getJavaProject().getProject()));
+        btnCompactClasspath.setSelection(PropertiesUtil.isCompactClasspath(javaPrj.getJavaProject().getProject()));
     }
 
     private void useAllClasspathLibs() {
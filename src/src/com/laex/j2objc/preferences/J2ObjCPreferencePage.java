@@ -12,6 +12,7 @@ package com.laex.j2objc.preferences;
 
 import j2objc_eclipse_plugin.Activator;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.ui.IWorkbench;
@@ -42,6 +43,10 @@ public class J2ObjCPreferencePage extends FieldEditorPreferencePage implements I
      */
     public void createFieldEditors() {
         addField(new DirectoryFieldEditor(PreferenceConstants.PATH_TO_COMPILER, "&Path to Compiler", getFieldEditorParent()));
+        addField(new BooleanFieldEditor(PreferenceConstants.BLOCK_ON_COMPILE_ERRORS, "&Do not translate when sources have compile errors",
+                getFieldEditorParent()));
+        addField(new BooleanFieldEditor(PreferenceConstants.TRANSLATE_ON_SAVE, "&Translate saved Java files in the background",
+                getFieldEditorParent()));
     }
 
     /*
@@ -15,6 +15,7 @@ import java.util.Map;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -139,6 +140,25 @@ public class J2ObjCPropertyPage extends PropertyPage implements IWorkbenchProper
         super();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.eclipse.ui.dialogs.PropertyPage#setElement(org.eclipse.core.runtime
+     * .IAdaptable)
+     */
+    @Override
+    public void setElement(IAdaptable element) {
+        super.setElement(element);
+
+        try {
+            setDescription(String.format("Settings of the active profile '%s'.",
+                    PropertiesUtil.getActiveProfile(((IJavaElement) element).getResource())));
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -10,14 +10,23 @@
  */
 package com.laex.j2objc.preferences;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.DirectoryDialog;
@@ -26,6 +35,7 @@ import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IWorkbenchPropertyPage;
 import org.eclipse.ui.dialogs.PropertyPage;
 
+import com.laex.j2objc.OutputExporter;
 import com.laex.j2objc.util.LogUtil;
 import com.laex.j2objc.util.PropertiesUtil;
 
@@ -35,9 +45,18 @@ import com.laex.j2objc.util.PropertiesUtil;
 public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPropertyPage {
     
     
+    /** The txt generated folder. */
+    private Text txtGeneratedFolder;
+
     /** The txt output directory. */
     private Text txtOutputDirectory;
 
+    /** The btn compare contents. */
+    private Button btnCompareContents;
+
+    /** The cmb export mode. */
+    private Combo cmbExportMode;
+
     /**
      * Instantiates a new output dir property page.
      */
@@ -46,6 +65,25 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
         setMessage("Output Directory for Generated Sources");
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.eclipse.ui.dialogs.PropertyPage#setElement(org.eclipse.core.runtime
+     * .IAdaptable)
+     */
+    @Override
+    public void setElement(IAdaptable element) {
+        super.setElement(element);
+
+        try {
+            setDescription(String.format("Settings of the active profile '%s'.",
+                    PropertiesUtil.getActiveProfile(((IJavaElement) element).getResource())));
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.eclipse.jface.preference.PreferencePage#createContents(org.eclipse.swt.widgets.Composite)
      */
@@ -54,6 +92,15 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
         Composite container = new Composite(parent, SWT.NULL);
         container.setLayout(new GridLayout(3, false));
 
+        Label lblGeneratedFolder = new Label(container, SWT.NONE);
+        lblGeneratedFolder.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        lblGeneratedFolder.setText("Generated folder");
+
+        txtGeneratedFolder = new Text(container, SWT.BORDER);
+        txtGeneratedFolder.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+        txtGeneratedFolder.setToolTipText("The folder of the project j2objc writes to, marked derived. "
+                + "Leave it empty to write into the source folders.");
+
         Label lblDirectory = new Label(container, SWT.NONE);
         lblDirectory.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
         lblDirectory.setText("Directory");
@@ -69,8 +116,23 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
             }
         });
         btnBrowse.setText("Browse");
-        
-        
+
+        Label lblExportMode = new Label(container, SWT.NONE);
+        lblExportMode.setLayoutData(new GridData(SWT.RIGHT, SWT.CENTER, false, false, 1, 1));
+        lblExportMode.setText("Export by");
+
+        cmbExportMode = new Combo(container, SWT.READ_ONLY);
+        cmbExportMode.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+        for (OutputExporter.Mode mode : OutputExporter.Mode.values()) {
+            cmbExportMode.add(mode.getLabel());
+        }
+        cmbExportMode.setToolTipText("Hard links and clones need the directory on the same file system as the workspace; "
+                + "files are copied when it is not.");
+
+        btnCompareContents = new Button(container, SWT.CHECK);
+        btnCompareContents.setLayoutData(new GridData(SWT.LEFT, SWT.CENTER, false, false, 3, 1));
+        btnCompareContents.setText("Compare contents of exported files of the same size, so unchanged files keep their timestamps");
+
         try {
             loadProperty();
         } catch (CoreException e1) {
@@ -96,7 +158,14 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
      */
     @Override
     protected void performDefaults() {
+        try {
+            txtGeneratedFolder.setText(PropertiesUtil.getDefaultGeneratedFolder(((IJavaProject) getElement()).getProject()));
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        }
         txtOutputDirectory.setText("");
+        btnCompareContents.setSelection(true);
+        cmbExportMode.select(OutputExporter.Mode.COPY.ordinal());
     }
     
     /* (non-Javadoc)
@@ -113,9 +182,20 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
     @Override
     public boolean performOk() {
         IJavaProject prj = (IJavaProject) getElement();
+        String generatedFolder = txtGeneratedFolder.getText().trim();
 
         try {
-            prj.getResource().setPersistentProperty(PropertiesUtil.OUTPUT_DIRECTORY_KEY, txtOutputDirectory.getText().trim());
+            String error = validateGeneratedFolder(prj, generatedFolder);
+            if (error != null) {
+                setErrorMessage(error);
+                return false;
+            }
+            setErrorMessage(null);
+
+            PropertiesUtil.persistGeneratedFolder(prj.getProject(), generatedFolder);
+            PropertiesUtil.persistOutputDirectory(prj.getProject(), txtOutputDirectory.getText().trim());
+            PropertiesUtil.persistExportOptions(prj.getProject(), btnCompareContents.getSelection(),
+                    OutputExporter.Mode.values()[cmbExportMode.getSelectionIndex()]);
         } catch (CoreException e) {
             LogUtil.logException(e);
             return false;
@@ -124,6 +204,40 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
         return super.performOk();
     }
 
+    /**
+     * Checks that the generated folder is a folder of the project that holds
+     * no sources or class files, as it is marked derived.
+     *
+     * @param prj
+     *            the prj
+     * @param folder
+     *            the folder relative to the project, or empty
+     * @return the error, or null if the folder is valid
+     * @throws JavaModelException
+     *             the java model exception
+     */
+    private String validateGeneratedFolder(IJavaProject prj, String folder) throws JavaModelException {
+        if (folder.length() == 0) {
+            return null;
+        }
+
+        IPath path = prj.getPath().append(folder);
+        IStatus status = ResourcesPlugin.getWorkspace().validatePath(path.toString(), IResource.FOLDER);
+        if (!status.isOK() || !prj.getPath().isPrefixOf(path)) {
+            return String.format("'%s' is not a folder of the project.", folder);
+        }
+
+        if (path.isPrefixOf(prj.getOutputLocation())) {
+            return "The generated folder must not hold the output folder of the project.";
+        }
+        for (IClasspathEntry entry : prj.getRawClasspath()) {
+            if (entry.getEntryKind() == IClasspathEntry.CPE_SOURCE && path.isPrefixOf(entry.getPath())) {
+                return "The generated folder must not hold a source folder of the project.";
+            }
+        }
+        return null;
+    }
+
     /**
      * Load property.
      *
@@ -131,10 +245,14 @@ public class OutputDirPropertyPage extends PropertyPage implements IWorkbenchPro
      */
     private void loadProperty() throws CoreException {
         IJavaProject prj = (IJavaProject) getElement();
+        txtGeneratedFolder.setText(PropertiesUtil.getGeneratedFolder(prj.getProject()));
+
         String outputDir = PropertiesUtil.getOutputDirectory(prj);
         if (outputDir != null) {
             txtOutputDirectory.setText(outputDir);
         }
+        btnCompareContents.setSelection(PropertiesUtil.isExportCompareContents(prj.getProject()));
+        cmbExportMode.select(PropertiesUtil.getExportMode(prj.getProject()).ordinal());
     }
 
 }
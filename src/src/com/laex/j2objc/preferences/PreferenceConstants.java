@@ -18,6 +18,12 @@ public class PreferenceConstants {
     /** The Constant INITIALIZE_FIRST_TIME. */
     public static final String INITIALIZE_FIRST_TIME = "propertyInitFirstTime";
 
+    /** The Constant BLOCK_ON_COMPILE_ERRORS. */
+    public static final String BLOCK_ON_COMPILE_ERRORS = "blockOnCompileErrors";
+
+    /** The Constant TRANSLATE_ON_SAVE. */
+    public static final String TRANSLATE_ON_SAVE = "translateOnSave";
+
     /** The Constant PATH_TO_COMPILER. */
     public static final String PATH_TO_COMPILER = "compilerPath";
 
@@ -28,6 +28,8 @@ public class PreferenceInitializer extends AbstractPreferenceInitializer {
      */
     public void initializeDefaultPreferences() {
         IPreferenceStore store = Activator.getDefault().getPreferenceStore();
+        store.setDefault(PreferenceConstants.BLOCK_ON_COMPILE_ERRORS, false);
+        store.setDefault(PreferenceConstants.TRANSLATE_ON_SAVE, false);
     }
 
 }
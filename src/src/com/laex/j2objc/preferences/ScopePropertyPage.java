@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc.preferences;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IWorkbenchPropertyPage;
+import org.eclipse.ui.dialogs.PropertyPage;
+
+import com.laex.j2objc.util.LogUtil;
+import com.laex.j2objc.util.PropertiesUtil;
+
+/**
+ * The Class ScopePropertyPage. Edits the include and exclude patterns and the
+ * excluding annotations that decide which units of the project are translated.
+ */
+public class ScopePropertyPage extends PropertyPage implements IWorkbenchPropertyPage {
+
+    /** The line separator of the pattern fields. */
+    private static final String LINE_SEPARATOR = "\n";
+
+    /** The txt includes. */
+    private Text txtIncludes;
+
+    /** The txt excludes. */
+    private Text txtExcludes;
+
+    /** The txt annotations. */
+    private Text txtAnnotations;
+
+    /**
+     * Instantiates a new scope property page.
+     */
+    public ScopePropertyPage() {
+        setTitle("Translation Scope");
+        setMessage("Units Translated by J2ObjC");
+        setDescription("One pattern per line: globs such as src/test/** or **/*Test.java, or packages such as com.acme.server.**. "
+                + "Leave the includes empty to include every unit.");
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#createContents(org.eclipse.swt.widgets.Composite)
+     */
+    @Override
+    protected Control createContents(Composite parent) {
+        Composite container = new Composite(parent, SWT.NULL);
+        container.setLayout(new GridLayout(1, false));
+
+        Label lblIncludes = new Label(container, SWT.NONE);
+        lblIncludes.setText("Include");
+
+        txtIncludes = new Text(container, SWT.BORDER | SWT.MULTI | SWT.V_SCROLL);
+        GridData gdIncludes = new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1);
+        gdIncludes.heightHint = 80;
+        txtIncludes.setLayoutData(gdIncludes);
+
+        Label lblExcludes = new Label(container, SWT.NONE);
+        lblExcludes.setText("Exclude");
+
+        txtExcludes = new Text(container, SWT.BORDER | SWT.MULTI | SWT.V_SCROLL);
+        GridData gdExcludes = new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1);
+        gdExcludes.heightHint = 80;
+        txtExcludes.setLayoutData(gdExcludes);
+
+        Label lblAnnotations = new Label(container, SWT.NONE);
+        lblAnnotations.setText("Exclude units whose top-level types are annotated with (one per line, e.g. GwtIncompatible)");
+
+        txtAnnotations = new Text(container, SWT.BORDER | SWT.MULTI | SWT.V_SCROLL);
+        GridData gdAnnotations = new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1);
+        gdAnnotations.heightHint = 50;
+        txtAnnotations.setLayoutData(gdAnnotations);
+
+        try {
+            loadProperty();
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+        }
+
+        return container;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performDefaults()
+     */
+    @Override
+    protected void performDefaults() {
+        txtIncludes.setText("");
+        txtExcludes.setText("");
+        txtAnnotations.setText("");
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performApply()
+     */
+    @Override
+    protected void performApply() {
+        performOk();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.jface.preference.PreferencePage#performOk()
+     */
+    @Override
+    public boolean performOk() {
+        IJavaProject prj = (IJavaProject) getElement();
+
+        try {
+            PropertiesUtil.persistScope(prj.getProject(), PropertiesUtil.splitPatterns(txtIncludes.getText()),
+                    PropertiesUtil.splitPatterns(txtExcludes.getText()), PropertiesUtil.splitPatterns(txtAnnotations.getText()));
+        } catch (CoreException e) {
+            LogUtil.logException(e);
+            return false;
+        }
+
+        return super.performOk();
+    }
+
+    /**
+     * Load property.
+     *
+     * @throws CoreException the core exception
+     */
+    private void loadProperty() throws CoreException {
+        IJavaProject prj = (IJavaProject) getElement();
+        txtIncludes.setText(StringUtils.join(PropertiesUtil.getScopeIncludes(prj.getProject()), LINE_SEPARATOR));
+        txtExcludes.setText(StringUtils.join(PropertiesUtil.getScopeExcludes(prj.getProject()), LINE_SEPARATOR));
+        txtAnnotations.setText(StringUtils.join(PropertiesUtil.getScopeAnnotations(prj.getProject()), LINE_SEPARATOR));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The Class HashUtil.
+ */
+public final class HashUtil {
+
+    /** The Constant HEX. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Md5 of a string.
+     *
+     * @param text
+     *            the text
+     * @return the hex digest
+     */
+    public static String md5(String text) {
+        try {
+            MessageDigest md = newDigest();
+            md.update(text.getBytes("UTF-8"));
+            return toHex(md.digest());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Md5 of a file's content.
+     *
+     * @param file
+     *            the file
+     * @return the hex digest
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static String md5(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            return md5(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Md5 of a stream's content. The stream is not closed.
+     *
+     * @param is
+     *            the input stream
+     * @return the hex digest
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static String md5(InputStream is) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = is.read(buffer)) != -1) {
+            md.update(buffer, 0, read);
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * New digest.
+     *
+     * @return the message digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * To hex.
+     *
+     * @param bytes
+     *            the bytes
+     * @return the string
+     */
+    private static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
+    }
+
+}
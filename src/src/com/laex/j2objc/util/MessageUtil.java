@@ -51,6 +51,21 @@ public final class MessageUtil {
         return mb.open();
     }
     
+    /**
+     * Asks whether an unfinished translation should be resumed.
+     *
+     * @param shell the shell
+     * @param completed the number of files already translated
+     * @return the int
+     */
+    public static int messageResumeTranslation(Shell shell, int completed) {
+        MessageBox mb = new MessageBox(shell, SWT.YES | SWT.NO);
+        mb.setText("Resume Translation");
+        mb.setMessage(String.format("A previous translation of the selection did not finish. %d file(s) were already translated. "
+                + "Do you want to resume and skip them ?", completed));
+        return mb.open();
+    }
+
     /**
      * Sets the console color.
      *
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+/**
+ * The Class ProcessUtil.
+ */
+public final class ProcessUtil {
+
+    /**
+     * Executes the command and writes its output and error streams to the
+     * J2OBJC console.
+     *
+     * @param display
+     *            the display
+     * @param cmd
+     *            the command
+     * @return the exit value of the process
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static int execute(Display display, String cmd) throws IOException {
+        Process p = Runtime.getRuntime().exec(cmd);
+
+        // drain the error stream meanwhile, so a batch reporting many errors cannot block the process
+        final Scanner scanErr = new Scanner(p.getErrorStream());
+        final List<String> errors = new ArrayList<String>();
+        Thread errReader = new Thread("j2objc error reader") {
+            @Override
+            public void run() {
+                while (scanErr.hasNextLine()) {
+                    errors.add(scanErr.nextLine());
+                }
+            }
+        };
+        errReader.start();
+
+        Scanner scanInput = new Scanner(p.getInputStream());
+
+        MessageConsoleStream mct = MessageUtil.findConsole(MessageUtil.J2OBJC_CONSOLE).newMessageStream();
+
+        mct.write(cmd);
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+
+        while (scanInput.hasNext()) {
+            MessageUtil.resetConsoleColor(display, mct);
+            mct.write(scanInput.nextLine());
+            mct.write(MessageUtil.NEW_LINE_CONSTANT);
+        }
+
+        try {
+            errReader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (String error : errors) {
+            MessageUtil.setConsoleColor(display, mct, SWT.COLOR_RED);
+            mct.write(error);
+            mct.write(MessageUtil.NEW_LINE_CONSTANT);
+        }
+
+        mct.write(MessageUtil.NEW_LINE_CONSTANT);
+
+        try {
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * Executes the command and captures its output and error streams, without
+     * writing to the console.
+     *
+     * @param command
+     *            the command and its arguments
+     * @return the output of the process, merged with its error stream
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static String capture(String... command) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+
+        Process p = pb.start();
+        try {
+            String output = IOUtils.toString(p.getInputStream());
+            p.waitFor();
+            return output;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + command[0]);
+        } finally {
+            IOUtils.closeQuietly(p.getInputStream());
+            IOUtils.closeQuietly(p.getOutputStream());
+        }
+    }
+
+    /**
+     * Executes the command without writing to the console, discarding its
+     * output.
+     *
+     * @param command
+     *            the command and its arguments
+     * @return the exit value of the process
+     * @throws IOException
+     *             Signals that an I/O exception has occurred.
+     */
+    public static int executeQuietly(List<String> command) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+
+        Process p = pb.start();
+        try {
+            IOUtils.toByteArray(p.getInputStream());
+            return p.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + command.get(0));
+        } finally {
+            IOUtils.closeQuietly(p.getInputStream());
+            IOUtils.closeQuietly(p.getOutputStream());
+        }
+    }
+
+}
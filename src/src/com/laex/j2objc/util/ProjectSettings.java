@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc.util;
+
+import j2objc_eclipse_plugin.Activator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Stores all the J2ObjC settings of a project as one versioned record in the
+ * project's working location, so that reading or writing the settings is a
+ * single file operation. The record is cached in memory and only read again
+ * when the file changes. Projects whose settings are still stored as separate
+ * persistent properties are migrated the first time their record is loaded;
+ * the properties are removed only once the record is written. A record of a
+ * version this plugin does not know is rejected rather than misread.
+ */
+public final class ProjectSettings {
+
+    /** The current version of the record. */
+    public static final int VERSION = 1;
+
+    /** The key holding the version of the record. */
+    private static final String VERSION_KEY = "settings.version";
+
+    /** The name of the record in the working location. */
+    private static final String FILE_NAME = "settings.properties";
+
+    /** The cached records keyed by project name. */
+    private static final Map<String, CachedRecord> RECORDS = new ConcurrentHashMap<String, CachedRecord>();
+
+    /**
+     * A record together with the timestamp of the file it was read from.
+     */
+    private static final class CachedRecord {
+
+        /** The record. */
+        private final Properties record;
+
+        /** The last modification of the file. */
+        private final long lastModified;
+
+        /**
+         * Instantiates a new cached record.
+         *
+         * @param record
+         *            the record
+         * @param lastModified
+         *            the last modification of the file
+         */
+        private CachedRecord(Properties record, long lastModified) {
+            this.record = record;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Instantiates a new project settings.
+     */
+    private ProjectSettings() {
+    }
+
+    /**
+     * Loads the settings of the project.
+     *
+     * @param project
+     *            the project
+     * @param legacyKeys
+     *            the persistent properties to migrate if the project has no
+     *            record yet
+     * @return a copy of the settings, which may be modified freely
+     * @throws CoreException
+     *             the core exception
+     */
+    public static Properties load(IResource project, String... legacyKeys) throws CoreException {
+        File file = getFile(project);
+
+        CachedRecord cached = RECORDS.get(project.getName());
+        if (cached != null && cached.lastModified == file.lastModified()) {
+            return copy(cached.record);
+        }
+
+        synchronized (RECORDS) {
+            Properties record;
+            if (file.isFile()) {
+                record = read(file);
+            } else {
+                record = migrate(project, legacyKeys);
+                write(file, record);
+                removeLegacy(project, legacyKeys);
+            }
+
+            RECORDS.put(project.getName(), new CachedRecord(record, file.lastModified()));
+            return copy(record);
+        }
+    }
+
+    /**
+     * Saves the settings of the project, replacing the previous record.
+     *
+     * @param project
+     *            the project
+     * @param settings
+     *            the settings
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void save(IResource project, Properties settings) throws CoreException {
+        File file = getFile(project);
+
+        synchronized (RECORDS) {
+            Properties record = copy(settings);
+            record.setProperty(VERSION_KEY, Integer.toString(VERSION));
+            write(file, record);
+
+            RECORDS.put(project.getName(), new CachedRecord(record, file.lastModified()));
+        }
+    }
+
+    /**
+     * Builds the record of a project from its persistent properties. The
+     * properties are kept until the record is written.
+     *
+     * @param project
+     *            the project
+     * @param legacyKeys
+     *            the keys of the persistent properties
+     * @return the record
+     * @throws CoreException
+     *             the core exception
+     */
+    private static Properties migrate(IResource project, String... legacyKeys) throws CoreException {
+        Properties record = new Properties();
+        record.setProperty(VERSION_KEY, Integer.toString(VERSION));
+
+        for (String key : legacyKeys) {
+            QualifiedName name = new QualifiedName("", key);
+            String value = project.getPersistentProperty(name);
+            if (value != null) {
+                record.setProperty(key, value);
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * Removes the persistent properties of a migrated project, so the record
+     * is the only copy of the settings.
+     *
+     * @param project
+     *            the project
+     * @param legacyKeys
+     *            the keys of the persistent properties
+     * @throws CoreException
+     *             the core exception
+     */
+    private static void removeLegacy(IResource project, String... legacyKeys) throws CoreException {
+        for (String key : legacyKeys) {
+            project.setPersistentProperty(new QualifiedName("", key), null);
+        }
+    }
+
+    /**
+     * Gets the file holding the record of the project.
+     *
+     * @param project
+     *            the project
+     * @return the file
+     * @throws CoreException
+     *             the core exception
+     */
+    private static File getFile(IResource project) throws CoreException {
+        IPath location = project.getProject().getWorkingLocation(Activator.PLUGIN_ID);
+        if (location == null) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Project is not accessible: " + project.getName()));
+        }
+        return location.append(FILE_NAME).toFile();
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param file
+     *            the file
+     * @return the record
+     * @throws CoreException
+     *             the core exception, also if the record is of a version
+     *             this plugin does not know
+     */
+    private static Properties read(File file) throws CoreException {
+        Properties record = new Properties();
+
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            record.load(is);
+        } catch (IOException e) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to read " + file, e));
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+
+        // version 1 is the first version, so there are no older records to upgrade yet
+        if (!Integer.toString(VERSION).equals(record.getProperty(VERSION_KEY))) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, String.format(
+                    "Unsupported version %s of %s", record.getProperty(VERSION_KEY), file)));
+        }
+
+        return record;
+    }
+
+    /**
+     * Writes a record, replacing the file only once the record is complete.
+     *
+     * @param file
+     *            the file
+     * @param record
+     *            the record
+     * @throws CoreException
+     *             the core exception
+     */
+    private static void write(File file, Properties record) throws CoreException {
+        file.getParentFile().mkdirs();
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(tmpFile);
+            record.store(os, "J2ObjC project settings");
+        } catch (IOException e) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to write " + file, e));
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+
+        if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file)) {
+            throw new CoreException(new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to replace " + file));
+        }
+    }
+
+    /**
+     * Copies a record.
+     *
+     * @param record
+     *            the record
+     * @return the copy
+     */
+    private static Properties copy(Properties record) {
+        Properties copy = new Properties();
+        copy.putAll(record);
+        return copy;
+    }
+}
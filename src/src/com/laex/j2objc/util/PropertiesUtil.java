@@ -13,10 +13,14 @@ package com.laex.j2objc.util;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import org.apache.commons.lang.StringUtils;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -25,6 +29,8 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.jdt.core.IJavaProject;
 
+import com.laex.j2objc.OutputExporter;
+import com.laex.j2objc.TranslationProfiles;
 import com.laex.j2objc.preferences.PreferenceConstants;
 
 /**
@@ -35,6 +41,70 @@ public class PropertiesUtil {
     /** The Constant OUTPUT_DIRECTORY_KEY. */
     public static final QualifiedName OUTPUT_DIRECTORY_KEY = new QualifiedName("", "OUTPUT_DIRECTORY");
 
+    /** The Constant TRANSLATE_LIBRARIES_KEY. */
+    public static final QualifiedName TRANSLATE_LIBRARIES_KEY = new QualifiedName("", "TRANSLATE_LIBRARIES");
+
+    /** The Constant COMPACT_CLASSPATH_KEY. */
+    public static final QualifiedName COMPACT_CLASSPATH_KEY = new QualifiedName("", "COMPACT_CLASSPATH");
+
+    /** The keys of the translation switches, as returned by getProjectProperties. */
+    private static final String[] SWITCH_KEYS = { PreferenceConstants.INITIALIZE_FIRST_TIME, PreferenceConstants.GENERATE_DEBUGGING_SUPPORT,
+            PreferenceConstants.NO_PACKAGE_DIRECTORIES, PreferenceConstants.X_LANGUAGE_OBJECTIVE_C, PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP,
+            PreferenceConstants.USE_REFERENCE_COUNTING, PreferenceConstants.USE_GC, PreferenceConstants.USE_ARC, PreferenceConstants.ERROR_TO_WARNING,
+            PreferenceConstants.QUIET, PreferenceConstants.VERBOSE, PreferenceConstants.NO_INLINE_FIELD_ACCESS, PreferenceConstants.NO_GENERATE_TEST_MAIN,
+            PreferenceConstants.IGNORE_MISSING_IMPORTS, PreferenceConstants.PRINT_CONVERTED_SOURCES, PreferenceConstants.TIMING_INFO,
+            PreferenceConstants.MEM_DEBUG, PreferenceConstants.GENERATE_NATIVE_STUBS, PreferenceConstants.DEAD_CODE_REPORT,
+            PreferenceConstants.METHOD_MAPPING_FILE, PreferenceConstants.BOOTCLASSPATH, PreferenceConstants.BUILD_CLOSURE,
+            PreferenceConstants.GENERATE_DEPRECATED, PreferenceConstants.STRIP_REFLECTION, PreferenceConstants.STRIP_GWT_INCOMPATIBLE,
+            PreferenceConstants.SEGMENTED_HEADERS };
+
+    /** The switches that take a value, which default to empty rather than null. */
+    private static final String[] TEXT_SWITCH_KEYS = { PreferenceConstants.DEAD_CODE_REPORT, PreferenceConstants.METHOD_MAPPING_FILE,
+            PreferenceConstants.BOOTCLASSPATH };
+
+    /** The keys of all the settings that used to be separate persistent properties. */
+    private static final String[] LEGACY_KEYS = legacyKeys();
+
+    /** The profile every project has. Its settings are stored under the plain keys. */
+    public static final String DEFAULT_PROFILE = "default";
+
+    /** The key of the active profile. */
+    private static final String ACTIVE_PROFILE_KEY = "ACTIVE_PROFILE";
+
+    /** The key of the comma separated names of the profiles besides the default profile. */
+    private static final String PROFILES_KEY = "PROFILES";
+
+    /** The prefix of the keys of the settings of a named profile. */
+    private static final String PROFILE_PREFIX = "profile.";
+
+    /** The key of the include patterns of the translation scope, one per line. */
+    private static final String SCOPE_INCLUDES_KEY = "SCOPE_INCLUDES";
+
+    /** The key of the exclude patterns of the translation scope, one per line. */
+    private static final String SCOPE_EXCLUDES_KEY = "SCOPE_EXCLUDES";
+
+    /** The key of the annotations excluding the units whose types carry them, one per line. */
+    private static final String SCOPE_ANNOTATIONS_KEY = "SCOPE_ANNOTATIONS";
+
+    /** The key of whether exported files of the same size are compared by contents. */
+    private static final String EXPORT_COMPARE_CONTENTS_KEY = "EXPORT_COMPARE_CONTENTS";
+
+    /** The key of how exported files that have to be copied are written. */
+    private static final String EXPORT_MODE_KEY = "EXPORT_MODE";
+
+    /** The key of the folder the profile's j2objc writes the outputs to, relative to the project. */
+    private static final String GENERATED_FOLDER_KEY = "GENERATED_FOLDER";
+
+    /**
+     * The folder j2objc writes the outputs of the default profile to unless
+     * set otherwise; other profiles write to a sibling suffixed with their
+     * name. Not a valid package name, so JDT never sees Java there.
+     */
+    public static final String DEFAULT_GENERATED_FOLDER = "j2objc-gen";
+
+    /** The pattern profile names must match. */
+    private static final String PROFILE_NAME_PATTERN = "[A-Za-z0-9_-]+";
+
     /**
      * Checks for property.
      * 
@@ -78,8 +148,8 @@ public class PropertiesUtil {
      *             the core exception
      */
     public static boolean isDefaultPropertiesSet(IResource prj) throws CoreException {
-        String firstTimer = prj.getPersistentProperty(new QualifiedName("", PreferenceConstants.GENERATE_DEBUGGING_SUPPORT));
-        return !(firstTimer == null);
+        Properties settings = loadSettings(prj);
+        return settings.getProperty(profileKey(activeProfile(settings), PreferenceConstants.GENERATE_DEBUGGING_SUPPORT)) != null;
     }
 
     /**
@@ -175,167 +245,498 @@ public class PropertiesUtil {
      *             the core exception
      */
     public static Map<String, String> getProjectProperties(IResource prj) throws CoreException {
+        Properties settings = loadSettings(prj);
+        String profile = activeProfile(settings);
 
         // are we running the translation for the first time ?, if so return
         // default preferences
-        String hasAnyPropertiesBeenSet = prj.getPersistentProperty(new QualifiedName("", PreferenceConstants.INITIALIZE_FIRST_TIME));
-        if (hasAnyPropertiesBeenSet == null) {
+        if (settings.getProperty(profileKey(profile, PreferenceConstants.INITIALIZE_FIRST_TIME)) == null) {
             return constructDefaultPreferences();
         }
 
-        String generateDebugSupport = prj.getPersistentProperty(qkey(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT));
-        String noPackageDirectories = prj.getPersistentProperty(qkey(PreferenceConstants.NO_PACKAGE_DIRECTORIES));
-        String xLangugaeObjectiveC = prj.getPersistentProperty(qkey(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C));
-        String xLangugaeObjectiveCPP = prj.getPersistentProperty(qkey(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP));
+        Map<String, String> prefs = new HashMap<String, String>();
+        for (String key : SWITCH_KEYS) {
+            prefs.put(key, settings.getProperty(profileKey(profile, key)));
+        }
 
-        String useRefCounting = prj.getPersistentProperty(qkey(PreferenceConstants.USE_REFERENCE_COUNTING));
-        String useGC = prj.getPersistentProperty(qkey(PreferenceConstants.USE_GC));
-        String useARC = prj.getPersistentProperty(qkey(PreferenceConstants.USE_ARC));
+        for (String key : TEXT_SWITCH_KEYS) {
+            if (prefs.get(key) == null)
+                prefs.put(key, "");
+        }
 
-        String errorToWarning = prj.getPersistentProperty(qkey(PreferenceConstants.ERROR_TO_WARNING));
-        String quiet = prj.getPersistentProperty(qkey(PreferenceConstants.QUIET));
-        String verbose = prj.getPersistentProperty(qkey(PreferenceConstants.VERBOSE));
+        return prefs;
+    }
 
-        String noInlineFieldAccess = prj.getPersistentProperty(qkey(PreferenceConstants.NO_INLINE_FIELD_ACCESS));
-        String noGenTestMain = prj.getPersistentProperty(qkey(PreferenceConstants.NO_GENERATE_TEST_MAIN));
-        String ignoreMissingImports = prj.getPersistentProperty(qkey(PreferenceConstants.IGNORE_MISSING_IMPORTS));
-        String printConverterdSources = prj.getPersistentProperty(qkey(PreferenceConstants.PRINT_CONVERTED_SOURCES));
-        String timingInfo = prj.getPersistentProperty(qkey(PreferenceConstants.TIMING_INFO));
+    /**
+     * Persist properties.
+     * 
+     * @param prj
+     *            the prj
+     * @param prefs
+     *            the prefs
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistProperties(IResource prj, Map<String, String> prefs) throws CoreException {
+        Properties settings = loadSettings(prj);
+        String profile = activeProfile(settings);
+
+        for (String key : SWITCH_KEYS) {
+            String value = prefs.get(key);
+            if (value == null) {
+                settings.remove(profileKey(profile, key));
+            } else {
+                settings.setProperty(profileKey(profile, key), value);
+            }
+        }
 
-        String memDebug = prj.getPersistentProperty(qkey(PreferenceConstants.MEM_DEBUG));
-        String generateNativeStubs = prj.getPersistentProperty(qkey(PreferenceConstants.GENERATE_NATIVE_STUBS));
-        String defaultPropertiesSetInfo = prj.getPersistentProperty(qkey(PreferenceConstants.INITIALIZE_FIRST_TIME));
+        ProjectSettings.save(prj, settings);
+        TranslationProfiles.invalidate(prj);
+    }
 
-        String deadCodeReportFile = prj.getPersistentProperty(qkey(PreferenceConstants.DEAD_CODE_REPORT));
-        if (deadCodeReportFile == null)
-            deadCodeReportFile = "";
+    /**
+     * Gets the output directory of the active profile.
+     * 
+     * @param javaProject
+     *            the java project
+     * @return the output directory
+     * @throws CoreException
+     *             the core exception
+     */
+    public static String getOutputDirectory(IJavaProject javaProject) throws CoreException {
+        Properties settings = loadSettings(javaProject.getResource());
+        String outputDir = settings.getProperty(profileKey(activeProfile(settings), OUTPUT_DIRECTORY_KEY.getLocalName()));
+        return outputDir;
+    }
 
-        String methodMappingFile = prj.getPersistentProperty(qkey(PreferenceConstants.METHOD_MAPPING_FILE));
-        if (methodMappingFile == null)
-            methodMappingFile = "";
+    /**
+     * Persist the output directory of the active profile.
+     * 
+     * @param project
+     *            the project
+     * @param outputDir
+     *            the output directory
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistOutputDirectory(IProject project, String outputDir) throws CoreException {
+        Properties settings = loadSettings(project);
+        settings.setProperty(profileKey(activeProfile(settings), OUTPUT_DIRECTORY_KEY.getLocalName()), outputDir);
+        ProjectSettings.save(project, settings);
+    }
 
-        String bootclasspath = prj.getPersistentProperty(qkey(PreferenceConstants.BOOTCLASSPATH));
-        if (bootclasspath == null)
-            bootclasspath = "";
+    /**
+     * Gets the folder j2objc writes the outputs of the active profile to,
+     * relative to the project.
+     * 
+     * @param project
+     *            the project
+     * @return the folder, or empty if j2objc writes the outputs into the
+     *         source folders
+     * @throws CoreException
+     *             the core exception
+     */
+    public static String getGeneratedFolder(IProject project) throws CoreException {
+        Properties settings = loadSettings(project);
+        String profile = activeProfile(settings);
+        return settings.getProperty(profileKey(profile, GENERATED_FOLDER_KEY), defaultGeneratedFolder(profile));
+    }
 
-        /* Changes from 0.8.7 */
-        String buildClosure = prj.getPersistentProperty(qkey(PreferenceConstants.BUILD_CLOSURE));
-        String generateDeprecated = prj.getPersistentProperty(qkey(PreferenceConstants.GENERATE_DEPRECATED));
-        String stripReflection = prj.getPersistentProperty(qkey(PreferenceConstants.STRIP_REFLECTION));
-        String stripGwtIncompatible = prj.getPersistentProperty(qkey(PreferenceConstants.STRIP_GWT_INCOMPATIBLE));
-        String segmentedHeaders = prj.getPersistentProperty(qkey(PreferenceConstants.SEGMENTED_HEADERS));
+    /**
+     * Gets the folder j2objc writes the outputs of the active profile to
+     * unless set otherwise.
+     * 
+     * @param project
+     *            the project
+     * @return the folder relative to the project
+     * @throws CoreException
+     *             the core exception
+     */
+    public static String getDefaultGeneratedFolder(IProject project) throws CoreException {
+        return defaultGeneratedFolder(activeProfile(loadSettings(project)));
+    }
 
-        Map<String, String> prefs = new HashMap<String, String>();
+    /**
+     * Persist the folder j2objc writes the outputs of the active profile to.
+     * 
+     * @param project
+     *            the project
+     * @param folder
+     *            the folder relative to the project, or empty to write the
+     *            outputs into the source folders
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistGeneratedFolder(IProject project, String folder) throws CoreException {
+        Properties settings = loadSettings(project);
+        settings.setProperty(profileKey(activeProfile(settings), GENERATED_FOLDER_KEY), folder);
+        ProjectSettings.save(project, settings);
+        TranslationProfiles.invalidate(project);
+    }
 
-        prefs.put(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT, generateDebugSupport);
-        prefs.put(PreferenceConstants.NO_PACKAGE_DIRECTORIES, noPackageDirectories);
-        prefs.put(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C, xLangugaeObjectiveC);
-        prefs.put(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP, xLangugaeObjectiveCPP);
-        prefs.put(PreferenceConstants.USE_REFERENCE_COUNTING, useRefCounting);
-        prefs.put(PreferenceConstants.USE_GC, useGC);
-        prefs.put(PreferenceConstants.USE_ARC, useARC);
-        prefs.put(PreferenceConstants.ERROR_TO_WARNING, errorToWarning);
-        prefs.put(PreferenceConstants.QUIET, quiet);
-        prefs.put(PreferenceConstants.VERBOSE, verbose);
-        prefs.put(PreferenceConstants.NO_INLINE_FIELD_ACCESS, noInlineFieldAccess);
-        prefs.put(PreferenceConstants.NO_GENERATE_TEST_MAIN, noGenTestMain);
-        prefs.put(PreferenceConstants.IGNORE_MISSING_IMPORTS, ignoreMissingImports);
-        prefs.put(PreferenceConstants.PRINT_CONVERTED_SOURCES, printConverterdSources);
-        prefs.put(PreferenceConstants.TIMING_INFO, timingInfo);
-        prefs.put(PreferenceConstants.INITIALIZE_FIRST_TIME, defaultPropertiesSetInfo);
-
-        prefs.put(PreferenceConstants.DEAD_CODE_REPORT, deadCodeReportFile);
-        prefs.put(PreferenceConstants.METHOD_MAPPING_FILE, methodMappingFile);
-        prefs.put(PreferenceConstants.BOOTCLASSPATH, bootclasspath);
-
-        prefs.put(PreferenceConstants.MEM_DEBUG, memDebug);
-        prefs.put(PreferenceConstants.GENERATE_NATIVE_STUBS, generateNativeStubs);
-
-        prefs.put(PreferenceConstants.BUILD_CLOSURE, buildClosure);
-        prefs.put(PreferenceConstants.GENERATE_DEPRECATED, generateDeprecated);
-        prefs.put(PreferenceConstants.STRIP_REFLECTION, stripReflection);
-        prefs.put(PreferenceConstants.STRIP_GWT_INCOMPATIBLE, stripGwtIncompatible);
-        prefs.put(PreferenceConstants.SEGMENTED_HEADERS, segmentedHeaders);
+    /**
+     * Checks if exported files of the same size as the files in the output
+     * directory are compared by contents when their modification times
+     * differ, so unchanged files keep their timestamps.
+     * 
+     * @param project
+     *            the project
+     * @return true, if contents are compared, which is the default
+     * @throws CoreException
+     *             the core exception
+     */
+    public static boolean isExportCompareContents(IProject project) throws CoreException {
+        return Boolean.parseBoolean(loadSettings(project).getProperty(EXPORT_COMPARE_CONTENTS_KEY, Boolean.TRUE.toString()));
+    }
 
-        return prefs;
+    /**
+     * Gets how exported files that have to be copied are written.
+     * 
+     * @param project
+     *            the project
+     * @return the mode, copying unless set otherwise
+     * @throws CoreException
+     *             the core exception
+     */
+    public static OutputExporter.Mode getExportMode(IProject project) throws CoreException {
+        String mode = loadSettings(project).getProperty(EXPORT_MODE_KEY);
+        try {
+            return mode != null ? OutputExporter.Mode.valueOf(mode) : OutputExporter.Mode.COPY;
+        } catch (IllegalArgumentException e) {
+            return OutputExporter.Mode.COPY;
+        }
     }
 
     /**
-     * Persist properties.
+     * Persist the export options.
+     * 
+     * @param project
+     *            the project
+     * @param compareContents
+     *            whether exported files of the same size are compared by
+     *            contents
+     * @param mode
+     *            how exported files that have to be copied are written
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistExportOptions(IProject project, boolean compareContents, OutputExporter.Mode mode) throws CoreException {
+        Properties settings = loadSettings(project);
+        settings.setProperty(EXPORT_COMPARE_CONTENTS_KEY, Boolean.toString(compareContents));
+        settings.setProperty(EXPORT_MODE_KEY, mode.name());
+        ProjectSettings.save(project, settings);
+    }
+
+    /**
+     * Gets the name of the active profile.
      * 
      * @param prj
      *            the prj
-     * @param prefs
-     *            the prefs
+     * @return the active profile
      * @throws CoreException
      *             the core exception
      */
-    public static void persistProperties(IResource prj, Map<String, String> prefs) throws CoreException {
+    public static String getActiveProfile(IResource prj) throws CoreException {
+        return activeProfile(loadSettings(prj));
+    }
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.INITIALIZE_FIRST_TIME), prefs.get(PreferenceConstants.INITIALIZE_FIRST_TIME));
+    /**
+     * Gets the names of the profiles of the project, the default profile
+     * first.
+     * 
+     * @param prj
+     *            the prj
+     * @return the profiles
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<String> getProfiles(IResource prj) throws CoreException {
+        List<String> profiles = new ArrayList<String>();
+        profiles.add(DEFAULT_PROFILE);
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT), prefs.get(PreferenceConstants.GENERATE_DEBUGGING_SUPPORT));
-        prj.setPersistentProperty(qkey(PreferenceConstants.NO_PACKAGE_DIRECTORIES), prefs.get(PreferenceConstants.NO_PACKAGE_DIRECTORIES));
-        prj.setPersistentProperty(qkey(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C), prefs.get(PreferenceConstants.X_LANGUAGE_OBJECTIVE_C));
-        prj.setPersistentProperty(qkey(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP), prefs.get(PreferenceConstants.X_LANGUAGE_OBJECTIVE_CPP));
+        String names = loadSettings(prj).getProperty(PROFILES_KEY);
+        if (StringUtils.isNotEmpty(names)) {
+            profiles.addAll(Arrays.asList(names.split(",")));
+        }
+        return profiles;
+    }
 
-        // Mem
-        prj.setPersistentProperty(qkey(PreferenceConstants.USE_REFERENCE_COUNTING), prefs.get(PreferenceConstants.USE_REFERENCE_COUNTING));
-        prj.setPersistentProperty(qkey(PreferenceConstants.USE_GC), prefs.get(PreferenceConstants.USE_GC));
-        prj.setPersistentProperty(qkey(PreferenceConstants.USE_ARC), prefs.get(PreferenceConstants.USE_ARC));
+    /**
+     * Checks if the name can be used for a profile.
+     * 
+     * @param name
+     *            the name
+     * @return true, if is valid profile name
+     */
+    public static boolean isValidProfileName(String name) {
+        return name != null && name.matches(PROFILE_NAME_PATTERN);
+    }
 
-        // Output
-        prj.setPersistentProperty(qkey(PreferenceConstants.ERROR_TO_WARNING), prefs.get(PreferenceConstants.ERROR_TO_WARNING));
-        prj.setPersistentProperty(qkey(PreferenceConstants.QUIET), prefs.get(PreferenceConstants.QUIET));
-        prj.setPersistentProperty(qkey(PreferenceConstants.VERBOSE), prefs.get(PreferenceConstants.VERBOSE));
+    /**
+     * Makes the profile the active profile of the project. The translation
+     * switches, the output directory and the translation state of the profile
+     * are used from then on.
+     * 
+     * @param prj
+     *            the prj
+     * @param profile
+     *            the profile
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void setActiveProfile(IResource prj, String profile) throws CoreException {
+        if (!getProfiles(prj).contains(profile)) {
+            throw new IllegalArgumentException("Unknown profile: " + profile);
+        }
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.NO_INLINE_FIELD_ACCESS), prefs.get(PreferenceConstants.NO_INLINE_FIELD_ACCESS));
-        prj.setPersistentProperty(qkey(PreferenceConstants.NO_GENERATE_TEST_MAIN), prefs.get(PreferenceConstants.NO_GENERATE_TEST_MAIN));
-        prj.setPersistentProperty(qkey(PreferenceConstants.IGNORE_MISSING_IMPORTS), prefs.get(PreferenceConstants.IGNORE_MISSING_IMPORTS));
-        prj.setPersistentProperty(qkey(PreferenceConstants.PRINT_CONVERTED_SOURCES), prefs.get(PreferenceConstants.PRINT_CONVERTED_SOURCES));
-        prj.setPersistentProperty(qkey(PreferenceConstants.TIMING_INFO), prefs.get(PreferenceConstants.TIMING_INFO));
+        Properties settings = loadSettings(prj);
+        settings.setProperty(ACTIVE_PROFILE_KEY, profile);
+        ProjectSettings.save(prj, settings);
+    }
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.MEM_DEBUG), prefs.get(PreferenceConstants.MEM_DEBUG));
-        prj.setPersistentProperty(qkey(PreferenceConstants.GENERATE_NATIVE_STUBS), prefs.get(PreferenceConstants.GENERATE_NATIVE_STUBS));
+    /**
+     * Creates a profile with the settings of the active profile and makes it
+     * the active profile. The new profile exports next to the active
+     * profile's output directory, in a directory suffixed with its name, and
+     * j2objc writes its outputs to a generated folder of its own.
+     * 
+     * @param prj
+     *            the prj
+     * @param profile
+     *            the name of the new profile
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void createProfile(IResource prj, String profile) throws CoreException {
+        if (!isValidProfileName(profile) || getProfiles(prj).contains(profile)) {
+            throw new IllegalArgumentException("Invalid profile name: " + profile);
+        }
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.DEAD_CODE_REPORT), prefs.get(PreferenceConstants.DEAD_CODE_REPORT));
-        prj.setPersistentProperty(qkey(PreferenceConstants.METHOD_MAPPING_FILE), prefs.get(PreferenceConstants.METHOD_MAPPING_FILE));
-        prj.setPersistentProperty(qkey(PreferenceConstants.BOOTCLASSPATH), prefs.get(PreferenceConstants.BOOTCLASSPATH));
+        Properties settings = loadSettings(prj);
+        String activeProfile = activeProfile(settings);
 
-        prj.setPersistentProperty(qkey(PreferenceConstants.MEM_DEBUG), prefs.get(PreferenceConstants.MEM_DEBUG));
-        prj.setPersistentProperty(qkey(PreferenceConstants.GENERATE_NATIVE_STUBS), prefs.get(PreferenceConstants.GENERATE_NATIVE_STUBS));
+        for (String key : SWITCH_KEYS) {
+            String value = settings.getProperty(profileKey(activeProfile, key));
+            if (value != null) {
+                settings.setProperty(profileKey(profile, key), value);
+            }
+        }
 
-        /* Changes from 0.8.7 */
-        prj.setPersistentProperty(qkey(PreferenceConstants.BUILD_CLOSURE), prefs.get(PreferenceConstants.BUILD_CLOSURE));
-        prj.setPersistentProperty(qkey(PreferenceConstants.GENERATE_DEPRECATED), prefs.get(PreferenceConstants.GENERATE_DEPRECATED));
-        prj.setPersistentProperty(qkey(PreferenceConstants.STRIP_REFLECTION), prefs.get(PreferenceConstants.STRIP_REFLECTION));
-        prj.setPersistentProperty(qkey(PreferenceConstants.STRIP_GWT_INCOMPATIBLE), prefs.get(PreferenceConstants.STRIP_GWT_INCOMPATIBLE));
-        prj.setPersistentProperty(qkey(PreferenceConstants.SEGMENTED_HEADERS), prefs.get(PreferenceConstants.SEGMENTED_HEADERS));
+        // each profile exports to a directory of its own, so its outputs survive a switch
+        String outputDir = settings.getProperty(profileKey(activeProfile, OUTPUT_DIRECTORY_KEY.getLocalName()));
+        if (StringUtils.isNotEmpty(outputDir)) {
+            settings.setProperty(profileKey(profile, OUTPUT_DIRECTORY_KEY.getLocalName()), outputDir + "-" + profile);
+        }
+
+        // outputs left in a shared folder would pass for those of the other profile
+        String generatedFolder = settings.getProperty(profileKey(activeProfile, GENERATED_FOLDER_KEY), defaultGeneratedFolder(activeProfile));
+        if (StringUtils.isNotBlank(generatedFolder)) {
+            settings.setProperty(profileKey(profile, GENERATED_FOLDER_KEY), generatedFolder.trim() + "-" + profile);
+        } else {
+            settings.setProperty(profileKey(profile, GENERATED_FOLDER_KEY), defaultGeneratedFolder(profile));
+        }
+
+        String names = settings.getProperty(PROFILES_KEY);
+        settings.setProperty(PROFILES_KEY, StringUtils.isEmpty(names) ? profile : names + "," + profile);
+        settings.setProperty(ACTIVE_PROFILE_KEY, profile);
+        ProjectSettings.save(prj, settings);
     }
 
     /**
-     * Gets the output directory.
+     * Checks if the library translation stage is enabled for the project.
      * 
-     * @param javaProject
-     *            the java project
-     * @return the output directory
+     * @param project
+     *            the project
+     * @return true, if library sources are translated into cached bundles
      * @throws CoreException
      *             the core exception
      */
-    public static String getOutputDirectory(IJavaProject javaProject) throws CoreException {
-        String outputDir = javaProject.getResource().getPersistentProperty(OUTPUT_DIRECTORY_KEY);
-        return outputDir;
+    public static boolean isTranslateLibraries(IProject project) throws CoreException {
+        return Boolean.parseBoolean(loadSettings(project).getProperty(TRANSLATE_LIBRARIES_KEY.getLocalName()));
+    }
+
+    /**
+     * Checks if the classpath entries are merged into a single archive.
+     * 
+     * @param project
+     *            the project
+     * @return true, if the classpath is compacted
+     * @throws CoreException
+     *             the core exception
+     */
+    public static boolean isCompactClasspath(IProject project) throws CoreException {
+        return Boolean.parseBoolean(loadSettings(project).getProperty(COMPACT_CLASSPATH_KEY.getLocalName()));
+    }
+
+    /**
+     * Persist the classpath options.
+     * 
+     * @param project
+     *            the project
+     * @param translateLibraries
+     *            whether library sources are translated into cached bundles
+     * @param compactClasspath
+     *            whether the classpath entries are merged into a single archive
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistClasspathOptions(IProject project, boolean translateLibraries, boolean compactClasspath) throws CoreException {
+        Properties settings = loadSettings(project);
+        settings.setProperty(TRANSLATE_LIBRARIES_KEY.getLocalName(), Boolean.toString(translateLibraries));
+        settings.setProperty(COMPACT_CLASSPATH_KEY.getLocalName(), Boolean.toString(compactClasspath));
+        ProjectSettings.save(project, settings);
+    }
+
+    /**
+     * Gets the include patterns of the translation scope. All units are
+     * included when there are none.
+     * 
+     * @param project
+     *            the project
+     * @return the include patterns
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<String> getScopeIncludes(IProject project) throws CoreException {
+        return splitPatterns(loadSettings(project).getProperty(SCOPE_INCLUDES_KEY));
+    }
+
+    /**
+     * Gets the exclude patterns of the translation scope.
+     * 
+     * @param project
+     *            the project
+     * @return the exclude patterns
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<String> getScopeExcludes(IProject project) throws CoreException {
+        return splitPatterns(loadSettings(project).getProperty(SCOPE_EXCLUDES_KEY));
+    }
+
+    /**
+     * Gets the annotations that exclude a unit from the translation scope
+     * when all its top-level types carry one of them.
+     * 
+     * @param project
+     *            the project
+     * @return the simple or qualified names of the annotations
+     * @throws CoreException
+     *             the core exception
+     */
+    public static List<String> getScopeAnnotations(IProject project) throws CoreException {
+        return splitPatterns(loadSettings(project).getProperty(SCOPE_ANNOTATIONS_KEY));
+    }
+
+    /**
+     * Persist the include and exclude patterns and the excluding annotations
+     * of the translation scope. The scope applies to every profile of the
+     * project.
+     * 
+     * @param project
+     *            the project
+     * @param includes
+     *            the include patterns
+     * @param excludes
+     *            the exclude patterns
+     * @param annotations
+     *            the excluding annotations
+     * @throws CoreException
+     *             the core exception
+     */
+    public static void persistScope(IProject project, List<String> includes, List<String> excludes, List<String> annotations)
+            throws CoreException {
+        Properties settings = loadSettings(project);
+        settings.setProperty(SCOPE_INCLUDES_KEY, StringUtils.join(includes, "\n"));
+        settings.setProperty(SCOPE_EXCLUDES_KEY, StringUtils.join(excludes, "\n"));
+        settings.setProperty(SCOPE_ANNOTATIONS_KEY, StringUtils.join(annotations, "\n"));
+        ProjectSettings.save(project, settings);
+        TranslationProfiles.invalidate(project);
+    }
+
+    /**
+     * Splits patterns stored one per line, dropping blank lines.
+     * 
+     * @param patterns
+     *            the patterns, or null
+     * @return the patterns
+     */
+    public static List<String> splitPatterns(String patterns) {
+        List<String> result = new ArrayList<String>();
+        if (patterns == null) {
+            return result;
+        }
+
+        for (String pattern : patterns.split("\\r?\\n")) {
+            if (StringUtils.isNotBlank(pattern)) {
+                result.add(pattern.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the settings record of the project, migrating the persistent
+     * properties of older versions.
+     * 
+     * @param prj
+     *            the prj
+     * @return the settings
+     * @throws CoreException
+     *             the core exception
+     */
+    private static Properties loadSettings(IResource prj) throws CoreException {
+        return ProjectSettings.load(prj, LEGACY_KEYS);
+    }
+
+    /**
+     * Gets the active profile from the settings.
+     * 
+     * @param settings
+     *            the settings
+     * @return the active profile
+     */
+    private static String activeProfile(Properties settings) {
+        return settings.getProperty(ACTIVE_PROFILE_KEY, DEFAULT_PROFILE);
+    }
+
+    /**
+     * Gets the folder j2objc writes the outputs of the profile to unless set
+     * otherwise.
+     * 
+     * @param profile
+     *            the profile
+     * @return the folder relative to the project
+     */
+    private static String defaultGeneratedFolder(String profile) {
+        return DEFAULT_PROFILE.equals(profile) ? DEFAULT_GENERATED_FOLDER : DEFAULT_GENERATED_FOLDER + "-" + profile;
+    }
+
+    /**
+     * Gets the key a setting of the profile is stored under.
+     * 
+     * @param profile
+     *            the profile
+     * @param key
+     *            the key of the setting
+     * @return the key
+     */
+    private static String profileKey(String profile, String key) {
+        return DEFAULT_PROFILE.equals(profile) ? key : PROFILE_PREFIX + profile + "." + key;
     }
 
     /**
-     * Qkey.
+     * Lists the keys of the persistent properties of older versions.
      * 
-     * @param val
-     *            the val
-     * @return the qualified name
+     * @return the keys
      */
-    private static QualifiedName qkey(String val) {
-        return new QualifiedName("", val);
+    private static String[] legacyKeys() {
+        String[] keys = new String[SWITCH_KEYS.length + 3];
+        System.arraycopy(SWITCH_KEYS, 0, keys, 0, SWITCH_KEYS.length);
+        keys[SWITCH_KEYS.length] = OUTPUT_DIRECTORY_KEY.getLocalName();
+        keys[SWITCH_KEYS.length + 1] = TRANSLATE_LIBRARIES_KEY.getLocalName();
+        keys[SWITCH_KEYS.length + 2] = COMPACT_CLASSPATH_KEY.getLocalName();
+        return keys;
     }
 
     /**
@@ -345,7 +746,7 @@ public class PropertiesUtil {
      *            the project
      * @return the classpath filename
      */
-    private static String getClasspathFilename(IProject project) {
+    public static String getClasspathFilename(IProject project) {
         return new StringBuilder(".").append(project.getName()).append("-classpath").toString();
     }
 
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2012, 2013 Hemanta Sapkota.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Hemanta Sapkota (laex.pearl@gmail.com)
+ */
+package com.laex.j2objc.views;
+
+import java.io.IOException;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.part.ViewPart;
+
+import com.laex.j2objc.TranslationPreview;
+import com.laex.j2objc.TranslationPreview.Result;
+import com.laex.j2objc.util.LogUtil;
+
+/**
+ * The Class TranslationPreviewView. Shows the Objective-C translation of the
+ * unit in the active Java editor, including the changes not saved yet. The
+ * unit is translated again once the editor has been idle for a short delay
+ * after JDT reconciled it; nothing runs while typing.
+ */
+public class TranslationPreviewView extends ViewPart {
+
+    /** The id of the view. */
+    public static final String ID = "j2objc-eclipse-plugin.translationPreviewView";
+
+    /** The idle time after a change before the unit is translated, in milliseconds. */
+    private static final long IDLE_DELAY = 300;
+
+    /** The unit shown, or null if no Java editor is active. */
+    private volatile ICompilationUnit unit;
+
+    /** The display. */
+    private Display display;
+
+    /** The lbl status. */
+    private Label lblStatus;
+
+    /** The txt header. */
+    private Text txtHeader;
+
+    /** The txt implementation. */
+    private Text txtImplementation;
+
+    /** The job translating the unit. */
+    private final Job previewJob = new Job("J2OBJC Preview") {
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            ICompilationUnit previewed = unit;
+            if (previewed == null || !previewed.exists()) {
+                return Status.OK_STATUS;
+            }
+
+            try {
+                show(previewed, TranslationPreview.translate(previewed), null);
+            } catch (CoreException e) {
+                LogUtil.logException(e);
+                show(previewed, null, e.getMessage());
+            } catch (IOException e) {
+                LogUtil.logException(e);
+                show(previewed, null, e.getMessage());
+            }
+            return Status.OK_STATUS;
+        }
+    };
+
+    /** Follows the active Java editor. */
+    private final IPartListener2 partListener = new IPartListener2() {
+        @Override
+        public void partActivated(IWorkbenchPartReference partRef) {
+            IWorkbenchPart part = partRef.getPart(false);
+            if (part instanceof IEditorPart) {
+                setEditor((IEditorPart) part);
+            }
+        }
+
+        @Override
+        public void partBroughtToTop(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partClosed(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partDeactivated(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partOpened(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partHidden(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partVisible(IWorkbenchPartReference partRef) {
+        }
+
+        @Override
+        public void partInputChanged(IWorkbenchPartReference partRef) {
+            IWorkbenchPart part = partRef.getPart(false);
+            if (part instanceof IEditorPart) {
+                setEditor((IEditorPart) part);
+            }
+        }
+    };
+
+    /** Translates the unit again when JDT reconciles the changes of its editor. */
+    private final IElementChangedListener reconcileListener = new IElementChangedListener() {
+        @Override
+        public void elementChanged(ElementChangedEvent event) {
+            IJavaElement element = event.getDelta().getElement();
+            ICompilationUnit shown = unit;
+
+            if (shown != null && element instanceof ICompilationUnit && ((ICompilationUnit) element).getPrimary().equals(shown.getPrimary())) {
+                schedulePreview();
+            }
+        }
+    };
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets
+     * .Composite)
+     */
+    @Override
+    public void createPartControl(Composite parent) {
+        display = parent.getDisplay();
+
+        Composite container = new Composite(parent, SWT.NULL);
+        container.setLayout(new GridLayout(1, false));
+
+        lblStatus = new Label(container, SWT.NONE);
+        lblStatus.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+        lblStatus.setText("Open a Java editor to preview its translation.");
+
+        SashForm sashForm = new SashForm(container, SWT.HORIZONTAL);
+        sashForm.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 1, 1));
+
+        Font font = JFaceResources.getTextFont();
+        txtHeader = new Text(sashForm, SWT.BORDER | SWT.MULTI | SWT.READ_ONLY | SWT.V_SCROLL | SWT.H_SCROLL);
+        txtHeader.setFont(font);
+        txtImplementation = new Text(sashForm, SWT.BORDER | SWT.MULTI | SWT.READ_ONLY | SWT.V_SCROLL | SWT.H_SCROLL);
+        txtImplementation.setFont(font);
+        sashForm.setWeights(new int[] { 1, 2 });
+
+        previewJob.setSystem(true);
+        getSite().getPage().addPartListener(partListener);
+        JavaCore.addElementChangedListener(reconcileListener, ElementChangedEvent.POST_RECONCILE);
+
+        setEditor(getSite().getPage().getActiveEditor());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+     */
+    @Override
+    public void setFocus() {
+        txtImplementation.setFocus();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.eclipse.ui.part.WorkbenchPart#dispose()
+     */
+    @Override
+    public void dispose() {
+        JavaCore.removeElementChangedListener(reconcileListener);
+        getSite().getPage().removePartListener(partListener);
+        unit = null;
+        previewJob.cancel();
+        super.dispose();
+    }
+
+    /**
+     * Shows the translation of the unit of the editor, if it edits one.
+     *
+     * @param editor
+     *            the editor, or null
+     */
+    private void setEditor(IEditorPart editor) {
+        if (editor == null) {
+            return;
+        }
+
+        // the working copy holds the changes not saved yet
+        IJavaElement element = JavaUI.getWorkingCopyManager().getWorkingCopy(editor.getEditorInput());
+        if (element == null) {
+            element = JavaUI.getEditorInputJavaElement(editor.getEditorInput());
+        }
+        if (!(element instanceof ICompilationUnit) || element.getResource() == null) {
+            return;
+        }
+
+        if (!element.equals(unit)) {
+            unit = (ICompilationUnit) element;
+            lblStatus.setText(String.format("Translating %s...", unit.getElementName()));
+            schedulePreview();
+        }
+    }
+
+    /**
+     * Translates the unit once no further change arrives during the idle
+     * delay.
+     */
+    private void schedulePreview() {
+        previewJob.cancel();
+        previewJob.schedule(IDLE_DELAY);
+    }
+
+    /**
+     * Shows the result in the view, unless another unit is shown meanwhile.
+     *
+     * @param previewed
+     *            the unit translated
+     * @param result
+     *            the result, or null if the unit could not be translated
+     * @param error
+     *            the error, or null
+     */
+    private void show(final ICompilationUnit previewed, final Result result, final String error) {
+        if (display.isDisposed()) {
+            return;
+        }
+
+        display.asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                if (txtHeader.isDisposed() || !previewed.equals(unit)) {
+                    return;
+                }
+
+                if (result == null) {
+                    lblStatus.setText(String.format("%s could not be translated: %s", previewed.getElementName(), StringUtils.defaultString(error)));
+                    return;
+                }
+
+                if (result.isTranslated()) {
+                    lblStatus.setText(String.format("%s translated in %d ms", previewed.getElementName(), result.getDuration()));
+                    txtHeader.setText(StringUtils.defaultString(result.getHeader()));
+                    txtImplementation.setText(StringUtils.defaultString(result.getImplementation()));
+                } else {
+                    // the output of j2objc tells why
+                    lblStatus.setText(String.format("%s has errors; showing the output of j2objc", previewed.getElementName()));
+                    txtImplementation.setText(result.getLog());
+                }
+            }
+        });
+    }
+}
@@ -13,6 +13,11 @@ package j2objc_eclipse_plugin;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import com.laex.j2objc.AnnotatedUnits;
+import com.laex.j2objc.ClasspathResolver;
+import com.laex.j2objc.TranslateOnSave;
+import com.laex.j2objc.TranslationProfiles;
+
 // TODO: Auto-generated Javadoc
 /**
  * The Class Activator.
@@ -43,6 +48,10 @@ public class Activator extends AbstractUIPlugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         plugin = this;
+        ClasspathResolver.install();
+        TranslationProfiles.install();
+        AnnotatedUnits.install();
+        TranslateOnSave.install();
     }
 
     /*
@@ -53,6 +62,10 @@ public class Activator extends AbstractUIPlugin {
      * )
      */
     public void stop(BundleContext context) throws Exception {
+        TranslateOnSave.uninstall();
+        AnnotatedUnits.uninstall();
+        TranslationProfiles.uninstall();
+        ClasspathResolver.uninstall();
         plugin = null;
         super.stop(context);
     }